@@ -0,0 +1,67 @@
+package com.karateca.ddescriber;
+
+import com.intellij.find.FindResult;
+import com.karateca.ddescriber.benchmark.SpecState;
+import com.karateca.ddescriber.core.EditPlan;
+import com.karateca.ddescriber.core.JasmineScanner;
+import com.karateca.ddescriber.core.TestState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures finding the tests in a file and planning the changes to clean it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScanBenchmark {
+
+  @Benchmark
+  public List<FindResult> findAll(SpecState spec) {
+    // The project is only used by the find manager.
+    JasmineFinder finder = new JasmineFinder(null, spec.document);
+    finder.findAll();
+    return finder.getFindResults();
+  }
+
+  @Benchmark
+  public int scan(SpecState spec) {
+    final int[] count = new int[1];
+    new JasmineScanner(spec.text).scan(new JasmineScanner.MatchListener() {
+      @Override
+      public void matchFound(JasmineScanner.Match match) {
+        count[0]++;
+      }
+    });
+    return count[0];
+  }
+
+  /**
+   * Plan the replacements that {@link ActionUtil#changeTestList} makes to clean the file, and
+   * make them on a copy of the text. The document itself needs a write action in a running IDE.
+   */
+  @Benchmark
+  public String changeTestList(SpecState spec) {
+    final EditPlan editPlan = new EditPlan();
+    new JasmineScanner(spec.text).scan(new JasmineScanner.MatchListener() {
+      @Override
+      public void matchFound(JasmineScanner.Match match) {
+        if (match.getTestState() != TestState.NotModified) {
+          editPlan.replace(match.getKeywordOffset(), match.getEndOffset(),
+              match.isDescribe() ? "describe(" : "it(");
+        }
+      }
+    });
+    return editPlan.apply(spec.text);
+  }
+}
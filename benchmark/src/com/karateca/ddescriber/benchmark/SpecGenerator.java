@@ -0,0 +1,143 @@
+package com.karateca.ddescriber.benchmark;
+
+import java.util.Random;
+
+/**
+ * Generates jasmine spec files with nested suites, to measure how the plugin behaves with large
+ * files.
+ * <p/>
+ * Every suite has a beforeEach() and {@code breadth} children. The suites at the last level have
+ * unit tests. Some tests are focused or excluded, picked at random with a fixed seed so every run
+ * parses the same file.
+ */
+public class SpecGenerator {
+
+  /**
+   * The quotes used around the test names.
+   */
+  public enum Quoting {
+    Single, Double, Backtick, Mixed
+  }
+
+  private int depth = 3;
+  private int breadth = 5;
+  private Quoting quoting = Quoting.Single;
+  private double focusDensity = 0.01;
+  private long seed = 42;
+
+  private StringBuilder text;
+  private Random random;
+  private int testCount;
+
+  /**
+   * @param depth The number of nested levels of describe(), the last one has the it().
+   */
+  public SpecGenerator setDepth(int depth) {
+    this.depth = depth;
+    return this;
+  }
+
+  /**
+   * @param breadth The number of children of every suite.
+   */
+  public SpecGenerator setBreadth(int breadth) {
+    this.breadth = breadth;
+    return this;
+  }
+
+  public SpecGenerator setQuoting(Quoting quoting) {
+    this.quoting = quoting;
+    return this;
+  }
+
+  /**
+   * @param focusDensity The fraction of tests that are focused or excluded, from 0 to 1.
+   */
+  public SpecGenerator setFocusDensity(double focusDensity) {
+    this.focusDensity = focusDensity;
+    return this;
+  }
+
+  public SpecGenerator setSeed(long seed) {
+    this.seed = seed;
+    return this;
+  }
+
+  /**
+   * @return The number of suites and unit tests in the last generated file.
+   */
+  public int getTestCount() {
+    return testCount;
+  }
+
+  /**
+   * @return The text of a spec file.
+   */
+  public String generate() {
+    text = new StringBuilder();
+    random = new Random(seed);
+    testCount = 0;
+
+    text.append("'use strict';\n\n");
+    addTest(0, "spec");
+    return text.toString();
+  }
+
+  private void addTest(int level, String name) {
+    boolean describe = level < depth;
+    String indentation = indentation(level);
+
+    text.append(indentation).append(prefix()).append(describe ? "describe(" : "it(")
+        .append(quote(name)).append(", function() {\n");
+    testCount++;
+
+    if (describe) {
+      text.append(indentation).append("  var value;\n\n");
+      text.append(indentation).append("  beforeEach(function() {\n");
+      text.append(indentation).append("    value = ").append(level).append(";\n");
+      text.append(indentation).append("  });\n");
+      for (int i = 0; i < breadth; i++) {
+        text.append('\n');
+        addTest(level + 1, name + " " + i);
+      }
+    } else {
+      text.append(indentation).append("  expect(value).toBe(").append(level - 1).append(");\n");
+    }
+
+    text.append(indentation).append("});\n");
+  }
+
+  /**
+   * @return f or x for the focused and excluded tests, an empty string for the rest.
+   */
+  private String prefix() {
+    if (random.nextDouble() >= focusDensity) {
+      return "";
+    }
+    return random.nextBoolean() ? "f" : "x";
+  }
+
+  private String quote(String name) {
+    Quoting nameQuoting = quoting;
+    if (nameQuoting == Quoting.Mixed) {
+      nameQuoting = Quoting.values()[random.nextInt(Quoting.Mixed.ordinal())];
+    }
+
+    switch (nameQuoting) {
+      case Double:
+        return '"' + name + " can't fail\"";
+      case Backtick:
+        return '`' + name + " with \"quotes\"`";
+      default:
+        return '\'' + name + " is \"quoted\"'";
+    }
+  }
+
+  private static String indentation(int level) {
+    StringBuilder result = new StringBuilder();
+    for (int i = 0; i < level; i++) {
+      result.append("  ");
+    }
+    return result.toString();
+  }
+}
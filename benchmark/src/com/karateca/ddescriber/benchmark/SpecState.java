@@ -0,0 +1,46 @@
+package com.karateca.ddescriber.benchmark;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.impl.DocumentImpl;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * A generated spec file shared by all the benchmark threads. The default sizes go from a usual
+ * spec file (156 tests) to a very large one (4681 tests).
+ */
+@State(Scope.Benchmark)
+public class SpecState {
+
+  @Param({"3", "4"})
+  public int depth;
+
+  @Param({"5", "8"})
+  public int breadth;
+
+  @Param({"Mixed"})
+  public SpecGenerator.Quoting quoting;
+
+  @Param({"0.01", "0.2"})
+  public double focusDensity;
+
+  public String text;
+  public Document document;
+  public int testCount;
+
+  @Setup
+  public void setUp() {
+    SpecGenerator generator = new SpecGenerator()
+        .setDepth(depth)
+        .setBreadth(breadth)
+        .setQuoting(quoting)
+        .setFocusDensity(focusDensity);
+    text = generator.generate();
+    testCount = generator.getTestCount();
+
+    // The document is only read, it works without a running application.
+    document = new DocumentImpl(text);
+  }
+}
@@ -0,0 +1,94 @@
+package com.karateca.ddescriber.model;
+
+import com.intellij.find.FindResult;
+import com.intellij.testFramework.LightVirtualFile;
+import com.karateca.ddescriber.JasmineFinder;
+import com.karateca.ddescriber.benchmark.SpecState;
+import com.karateca.ddescriber.core.TestState;
+import com.karateca.ddescriber.dialog.PendingChanges;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building the model of a file once its tests were found: the tests, the hierarchy,
+ * the tree and the pending changes of the dialog.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelBenchmark {
+
+  /**
+   * The tests found in the generated file.
+   */
+  @State(Scope.Thread)
+  public static class FoundTests {
+    List<FindResult> findResults;
+    JasmineFile jasmineFile;
+    Hierarchy hierarchy;
+
+    @Setup
+    public void setUp(SpecState spec) {
+      JasmineFinder finder = new JasmineFinder(null, spec.document);
+      finder.findAll();
+      findResults = finder.getFindResults();
+
+      jasmineFile = new JasmineFile(null, new LightVirtualFile("spec.js", spec.text));
+      hierarchy = new Hierarchy(spec.document, findResults);
+    }
+  }
+
+  @Benchmark
+  public List<TestFindResult> createTestFindResults(SpecState spec, FoundTests found) {
+    List<TestFindResult> tests = new ArrayList<TestFindResult>(found.findResults.size());
+    for (FindResult findResult : found.findResults) {
+      tests.add(new TestFindResult(spec.document, findResult));
+    }
+    return tests;
+  }
+
+  @Benchmark
+  public Hierarchy createHierarchy(SpecState spec, FoundTests found) {
+    return new Hierarchy(spec.document, found.findResults);
+  }
+
+  /**
+   * Build the tree of the tests. The tests of the hierarchy are created by the first call and
+   * reused after that, like when the dialog is opened again.
+   */
+  @Benchmark
+  public TreeNode populateTree(FoundTests found) {
+    return found.jasmineFile.populateTree(found.hierarchy.getTable());
+  }
+
+  /**
+   * Include every test in the dialog, then get the tests to change. The pending changes are
+   * cleared at the end, so every call starts from the same state.
+   */
+  @Benchmark
+  public List<TestFindResult> pendingChanges(FoundTests found) {
+    List<TestFindResult> tests = found.hierarchy.getAllUnitTests();
+    PendingChanges pendingChanges = new PendingChanges(tests);
+    for (TestFindResult test : tests) {
+      pendingChanges.itemChanged(test, TestState.Included);
+    }
+    List<TestFindResult> testsToChange = pendingChanges.getTestsToChange();
+
+    found.hierarchy.getTable().clearPendingChangeStates();
+    return testsToChange;
+  }
+}
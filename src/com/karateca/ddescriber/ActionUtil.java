@@ -4,13 +4,13 @@ import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.command.CommandProcessor;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.karateca.ddescriber.core.TestState;
 import com.karateca.ddescriber.model.TestFindResult;
-import com.karateca.ddescriber.model.TestState;
 
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 
 public class ActionUtil {
@@ -24,13 +24,28 @@ public class ActionUtil {
     ApplicationManager.getApplication().runReadAction(action);
   }
 
+  /**
+   * Run a read operation that gives way to write actions. The operation starts again every time
+   * a write action interrupts it, so it never blocks the UI thread.
+   *
+   * @param action The action to run. It must call ProgressManager.checkCanceled() periodically.
+   * @param indicator The indicator of the background task running the action.
+   */
+  public static void runNonBlockingReadAction(Runnable action, ProgressIndicator indicator) {
+    while (!ProgressIndicatorUtils.runInReadActionWithWriteActionPriority(action, indicator)) {
+      indicator.checkCanceled();
+      ProgressIndicatorUtils.yieldToPendingWriteActions();
+    }
+  }
+
   public static Document getDocument(VirtualFile virtualFile) {
     FileDocumentManager instance = FileDocumentManager.getInstance();
     return instance.getDocument(virtualFile);
   }
 
   /**
-   * Include, exclude, or rollback the selected tests.
+   * Include, exclude, or rollback the selected tests. All the tests are changed in a single
+   * bulk update of the document.
    *
    * @param project The current project.
    * @param document The document to modify.
@@ -40,26 +55,60 @@ public class ActionUtil {
   public static void changeTestList(
       Project project,
       final Document document,
-      final List<TestFindResult> testList,
+      List<TestFindResult> testList,
       final JasmineSyntax jasmineSyntax) {
-    // Change the test from the bottom up to avoid shifting the offsets.
-    Collections.sort(testList, new Comparator<TestFindResult>() {
-      @Override
-      public int compare(TestFindResult left, TestFindResult right) {
-        return right.getEndOffset() - left.getStartOffset();
-      }
-    });
+    DocumentEditPlan editPlan = new DocumentEditPlan();
+    for (TestFindResult testFindResult : testList) {
+      editPlan.replace(testFindResult.getStartOffset(), testFindResult.getEndOffset(),
+          getReplaceStringValue(testFindResult, testFindResult.getPendingChangeState(),
+              jasmineSyntax));
+    }
+    applyEditPlan(project, document, editPlan);
+  }
+
+  /**
+   * Roll back the tests to describe() and it(), whatever their pending changes are.
+   *
+   * @param project The current project.
+   * @param document The document to modify.
+   * @param testList The tests to roll back.
+   */
+  public static void rollbackTestList(Project project, Document document,
+      List<TestFindResult> testList) {
+    DocumentEditPlan editPlan = new DocumentEditPlan();
+    for (TestFindResult testFindResult : testList) {
+      editPlan.replace(testFindResult.getStartOffset(), testFindResult.getEndOffset(),
+          getReplaceStringValue(testFindResult, TestState.RolledBack, JasmineSyntax.Version2));
+    }
+    applyEditPlan(project, document, editPlan);
+  }
+
+  private static void applyEditPlan(Project project, final Document document,
+      final DocumentEditPlan editPlan) {
+    if (editPlan.isEmpty()) {
+      return;
+    }
 
     runWriteActionInsideCommand(project, new Runnable() {
       @Override
       public void run() {
-        for (TestFindResult testFindResult : testList) {
-          changeSelectedLine(document, testFindResult, jasmineSyntax);
-        }
+        editPlan.apply(document);
       }
     });
   }
 
+  /**
+   * Run an action as a single undoable command. The commands started by the action, such as
+   * {@link #changeTestList}, become part of it.
+   *
+   * @param project The current project.
+   * @param name The name of the command.
+   * @param action The action to run.
+   */
+  public static void runInsideCommand(Project project, String name, Runnable action) {
+    CommandProcessor.getInstance().executeCommand(project, action, name, null);
+  }
+
   /**
    * Run a write operation within a command.
    *
@@ -76,27 +125,11 @@ public class ActionUtil {
   }
 
   /**
-   * Perform the replace for the selected line. It will add or remove a "d" from describe() and an
-   * "i" form it().
-   * @param document The document you want to change.
-   * @param test The line that has to change.
-   * @param jasmineSyntax Whether to use ddescribe of fdescribe.
+   * Get the text that replaces a test. It will add or remove a "d" from describe() and an "i"
+   * from it().
    */
-  private static void changeSelectedLine(Document document,
-      TestFindResult test,
-      JasmineSyntax jasmineSyntax) {
-    String newText = getReplaceStringValue(test, jasmineSyntax);
-
-    int start = test.getStartOffset();
-    int end = test.getEndOffset();
-
-    document.replaceString(start, end, newText);
-  }
-
-  private static String getReplaceStringValue(TestFindResult test,
+  private static String getReplaceStringValue(TestFindResult test, TestState newState,
       JasmineSyntax jasmineSyntax) {
-    TestState newState = test.getPendingChangeState();
-
     if (newState == TestState.Excluded) {
       return test.isDescribe() ? "xdescribe(" : "xit(";
     }
@@ -0,0 +1,207 @@
+package com.karateca.ddescriber;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.PlatformDataKeys;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.GlobalSearchScopesCore;
+import com.karateca.ddescriber.core.TestState;
+import com.karateca.ddescriber.index.FocusedTestIndex;
+import com.karateca.ddescriber.model.JasmineFile;
+import com.karateca.ddescriber.model.TestFindResult;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Removes every fdescribe / ddescribe / xdescribe and fit / iit / xit from the files in the
+ * project, or in the selected directory.
+ * <p/>
+ * The files are parsed in parallel and cleaned with a single command, so one undo restores all
+ * of them.
+ */
+public class CleanAllFilesAction extends AnAction {
+
+  private static final int MAX_PARALLELISM = 4;
+  // Number of files parsed by a single fork join task.
+  private static final int FILES_PER_TASK = 16;
+
+  @Override
+  public void update(AnActionEvent e) {
+    e.getPresentation().setEnabled(e.getData(PlatformDataKeys.PROJECT) != null);
+  }
+
+  @Override
+  public void actionPerformed(AnActionEvent actionEvent) {
+    final Project project = actionEvent.getData(PlatformDataKeys.PROJECT);
+    if (project == null) {
+      return;
+    }
+
+    final GlobalSearchScope scope = getScope(project, actionEvent.getData(PlatformDataKeys.VIRTUAL_FILE));
+
+    ProgressManager.getInstance().run(new Task.Backgroundable(project, "Cleaning jasmine tests", true) {
+      private final Map<Document, CleanTask> cleanTasks = new ConcurrentHashMap<Document, CleanTask>();
+
+      @Override
+      public void run(ProgressIndicator indicator) {
+        // The index is read in the background, it waits for the indexing to finish.
+        indicator.setText("Finding the marked tests");
+        List<VirtualFile> files = findCandidateFiles(project, scope);
+
+        indicator.setIndeterminate(false);
+        indicator.setText("Parsing the files");
+        ForkJoinPool pool = new ForkJoinPool(
+            Math.min(MAX_PARALLELISM, Runtime.getRuntime().availableProcessors()));
+        try {
+          pool.invoke(new ParseFilesTask(project, files, 0, files.size(), indicator,
+              new AtomicInteger(), cleanTasks));
+        } finally {
+          pool.shutdown();
+        }
+      }
+
+      @Override
+      public void onSuccess() {
+        cleanFiles(project, cleanTasks);
+      }
+    });
+  }
+
+  private static GlobalSearchScope getScope(Project project, VirtualFile selectedFile) {
+    if (selectedFile != null && selectedFile.isDirectory()) {
+      return GlobalSearchScopesCore.directoryScope(project, selectedFile, true);
+    }
+    return GlobalSearchScope.projectScope(project);
+  }
+
+  /**
+   * Use the index to find the files with included or excluded tests. Must not be called from the
+   * event dispatch thread, it waits until the index is ready.
+   */
+  private static List<VirtualFile> findCandidateFiles(Project project,
+      final GlobalSearchScope scope) {
+    DumbService dumbService = DumbService.getInstance(project);
+    return dumbService.runReadActionInSmartMode(new Computable<List<VirtualFile>>() {
+      @Override
+      public List<VirtualFile> compute() {
+        Set<VirtualFile> files = new LinkedHashSet<VirtualFile>();
+        files.addAll(FocusedTestIndex.getFilesWithTests(TestState.Included, scope));
+        files.addAll(FocusedTestIndex.getFilesWithTests(TestState.Excluded, scope));
+        return new ArrayList<VirtualFile>(files);
+      }
+    });
+  }
+
+  /**
+   * Roll back all the marked tests in a single command.
+   */
+  private static void cleanFiles(final Project project, final Map<Document, CleanTask> cleanTasks) {
+    ActionUtil.runInsideCommand(project, "Clean jasmine tests", new Runnable() {
+      @Override
+      public void run() {
+        for (Map.Entry<Document, CleanTask> entry : cleanTasks.entrySet()) {
+          Document document = entry.getKey();
+          CleanTask cleanTask = entry.getValue();
+
+          // Skip the files that changed after they were parsed.
+          if (document.getModificationStamp() == cleanTask.modificationStamp) {
+            ActionUtil.rollbackTestList(project, document, cleanTask.tests);
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * The tests to roll back in a document.
+   */
+  private static class CleanTask {
+    final long modificationStamp;
+    final List<TestFindResult> tests;
+
+    CleanTask(long modificationStamp, List<TestFindResult> tests) {
+      this.modificationStamp = modificationStamp;
+      this.tests = tests;
+    }
+  }
+
+  /**
+   * Parses a range of files, splitting the range until it is small enough.
+   */
+  private static class ParseFilesTask extends RecursiveAction {
+    private final Project project;
+    private final List<VirtualFile> files;
+    private final int from;
+    private final int to;
+    private final ProgressIndicator indicator;
+    private final AtomicInteger parsedCount;
+    private final Map<Document, CleanTask> cleanTasks;
+
+    ParseFilesTask(Project project, List<VirtualFile> files, int from, int to,
+        ProgressIndicator indicator, AtomicInteger parsedCount, Map<Document, CleanTask> cleanTasks) {
+      this.project = project;
+      this.files = files;
+      this.from = from;
+      this.to = to;
+      this.indicator = indicator;
+      this.parsedCount = parsedCount;
+      this.cleanTasks = cleanTasks;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > FILES_PER_TASK) {
+        int middle = (from + to) >>> 1;
+        invokeAll(
+            new ParseFilesTask(project, files, from, middle, indicator, parsedCount, cleanTasks),
+            new ParseFilesTask(project, files, middle, to, indicator, parsedCount, cleanTasks));
+        return;
+      }
+
+      for (int i = from; i < to; i++) {
+        indicator.checkCanceled();
+        parseFile(files.get(i));
+        indicator.setFraction((double) parsedCount.incrementAndGet() / files.size());
+      }
+    }
+
+    private void parseFile(final VirtualFile virtualFile) {
+      ApplicationManager.getApplication().runReadAction(new Runnable() {
+        @Override
+        public void run() {
+          if (!virtualFile.isValid()) {
+            return;
+          }
+          Document document = ActionUtil.getDocument(virtualFile);
+          if (document == null) {
+            return;
+          }
+
+          JasmineFile jasmineFile = new JasmineFile(project, virtualFile);
+          jasmineFile.buildHierarchySync();
+          List<TestFindResult> tests = jasmineFile.getElementsMarkedToRun();
+          if (!tests.isEmpty()) {
+            cleanTasks.put(document, new CleanTask(jasmineFile.getModificationStamp(), tests));
+          }
+        }
+      });
+    }
+  }
+}
@@ -0,0 +1,38 @@
+package com.karateca.ddescriber;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.util.DocumentUtil;
+import com.karateca.ddescriber.core.EditPlan;
+
+import java.util.List;
+
+/**
+ * Applies the replacements of a plan to a document in one bulk update.
+ */
+public class DocumentEditPlan extends EditPlan {
+
+  /**
+   * Make all the replacements in a single bulk update. Must be called from a write action.
+   *
+   * @param document The document to change.
+   * @throws IllegalArgumentException When two ranges overlap or go past the end of the document.
+   */
+  public void apply(final Document document) {
+    final List<Replacement> sorted = getReplacements();
+    if (sorted.isEmpty()) {
+      return;
+    }
+
+    checkEnd(sorted, document.getTextLength());
+
+    DocumentUtil.executeInBulk(document, true, new Runnable() {
+      @Override
+      public void run() {
+        for (Replacement replacement : sorted) {
+          document.replaceString(replacement.getStartOffset(), replacement.getEndOffset(),
+              replacement.getText());
+        }
+      }
+    });
+  }
+}
@@ -8,10 +8,11 @@ import com.intellij.openapi.editor.impl.DocumentImpl;
 import com.intellij.openapi.editor.impl.EditorImpl;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.karateca.ddescriber.core.TestState;
 import com.karateca.ddescriber.dialog.DescriberDialog;
 import com.karateca.ddescriber.model.JasmineFile;
+import com.karateca.ddescriber.model.JasmineFileCache;
 import com.karateca.ddescriber.model.TestFindResult;
-import com.karateca.ddescriber.model.TestState;
 
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
@@ -34,6 +35,12 @@ public class JasmineDescribeReplaceAction extends AnAction {
   }
 
   public void actionPerformed(AnActionEvent actionEvent) {
+    // Pressing the shortcut while the tests are being found cancels the search.
+    if (jasmineFile != null && jasmineFile.isBuilding()) {
+      jasmineFile.cancelBuild();
+      return;
+    }
+
     project = actionEvent.getData(PlatformDataKeys.PROJECT);
     editor = (EditorImpl) actionEvent.getData(PlatformDataKeys.EDITOR);
     if (editor == null) {
@@ -46,12 +53,25 @@ public class JasmineDescribeReplaceAction extends AnAction {
       return;
     }
 
-    jasmineFile = new JasmineFile(project, virtualFile);
+    // Reuse the tests when the file did not change since the last time.
+    final JasmineFileCache cache = JasmineFileCache.getInstance(project);
+    JasmineFile cachedFile = cache.getIfUpToDate(virtualFile);
+    if (cachedFile != null) {
+      jasmineFile = cachedFile;
+      jasmineFile.clearPendingChanges();
+      showDialog();
+      return;
+    }
+
+    final VirtualFile file = virtualFile;
+    final JasmineFile newFile = new JasmineFile(project, virtualFile);
+    jasmineFile = newFile;
 
     // Async callback to get the search results for it( and describe(
     jasmineFile.addResultsReadyListener(new ChangeListener() {
       @Override
       public void stateChanged(ChangeEvent changeEvent) {
+        cache.put(file, newFile);
         showDialog();
       }
     });
@@ -63,6 +83,15 @@ public class JasmineDescribeReplaceAction extends AnAction {
     DescriberDialog dialog = new DescriberDialog(project, jasmineFile, editor.getCaretModel().getOffset());
     dialog.show();
 
+    try {
+      applyDialogChoice(dialog);
+    } finally {
+      // The tests are shared with the other views of the file, don't leave changes behind.
+      jasmineFile.clearPendingChanges();
+    }
+  }
+
+  private void applyDialogChoice(DescriberDialog dialog) {
     switch (dialog.getExitCode()) {
       case DescriberDialog.CLEAN_CURRENT_EXIT_CODE:
         // Clean the current file.
@@ -88,7 +117,8 @@ public class JasmineDescribeReplaceAction extends AnAction {
           pendingChanges.add(selectedTest);
         }
 
-        ActionUtil.changeTestList(project, document, pendingChanges, dialog.jasmineSyntax);
+        ActionUtil.changeTestList(project, document, pendingChanges,
+            JasmineSyntax.getSelected());
         break;
       case DescriberDialog.GO_TO_TEST_EXIT_CODE:
         goToSelectedTest(dialog.getSelectedTest());
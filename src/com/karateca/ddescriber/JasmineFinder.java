@@ -3,8 +3,10 @@ package com.karateca.ddescriber;
 import com.intellij.find.FindManager;
 import com.intellij.find.FindModel;
 import com.intellij.find.FindResult;
+import com.intellij.find.impl.FindResultImpl;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.project.Project;
+import com.karateca.ddescriber.core.JasmineScanner;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -18,6 +20,8 @@ public class JasmineFinder {
   private final Project project;
   private final Document document;
   public List<FindResult> findResults;
+  private boolean complete;
+  private int[] multiLineRegions = new int[0];
 
   public JasmineFinder(Project project, Document document) {
     this.project = project;
@@ -38,11 +42,58 @@ public class JasmineFinder {
     return clone;
   }
 
+  /**
+   * Find all the suites and unit tests with a single pass over the document.
+   */
   public void findAll() {
+    findAll(null, Long.MAX_VALUE);
+  }
+
+  /**
+   * Find the suites and unit tests until the deadline is reached.
+   *
+   * @param cancellationCheck Called periodically, it can throw to cancel the search. Can be null.
+   * @param deadline The time (in milliseconds) when the search stops and keeps the partial results.
+   */
+  public void findAll(Runnable cancellationCheck, long deadline) {
+    findResults = new ArrayList<FindResult>();
+
+    final List<Integer> regions = new ArrayList<Integer>();
+
+    JasmineScanner scanner = new JasmineScanner(document.getCharsSequence());
+    scanner.setCancellationCheck(cancellationCheck);
+    scanner.setDeadline(deadline);
+    scanner.setRegionListener(new JasmineScanner.RegionListener() {
+      @Override
+      public void regionFound(int startOffset, int endOffset) {
+        regions.add(startOffset);
+        regions.add(endOffset);
+      }
+    });
+    complete = scanner.scan(new JasmineScanner.MatchListener() {
+      @Override
+      public void matchFound(JasmineScanner.Match match) {
+        findResults.add(new FindResultImpl(match.getStartOffset(), match.getEndOffset()));
+      }
+    });
+
+    multiLineRegions = new int[regions.size()];
+    for (int i = 0; i < multiLineRegions.length; i++) {
+      multiLineRegions[i] = regions.get(i);
+    }
+  }
+
+  /**
+   * Find all the suites and unit tests using the find manager. This is slower than
+   * {@link #findAll()} because the regular expression is restarted after every match, and it
+   * doesn't skip the tests in comments, strings and template literals.
+   */
+  public void findAllWithFindManager() {
     FindManager findManager = FindManager.getInstance(project);
     FindModel findModel = createFindModel(findManager);
 
     findResults = new ArrayList<FindResult>();
+    complete = true;
 
     CharSequence text = document.getCharsSequence();
     int offset = 0;
@@ -60,7 +111,22 @@ public class JasmineFinder {
     }
   }
 
+  /**
+   * @return The start and end offsets of the comments, strings and template literals that span
+   * lines, found by the last {@link #findAll()}. The tests inside them are skipped.
+   */
+  public int[] getMultiLineRegions() {
+    return multiLineRegions;
+  }
+
   public List<FindResult> getFindResults() {
     return findResults;
   }
+
+  /**
+   * @return False when the last search ran out of time and only has partial results.
+   */
+  public boolean isComplete() {
+    return complete;
+  }
 }
@@ -1,5 +1,7 @@
 package com.karateca.ddescriber;
 
+import com.intellij.ide.util.PropertiesComponent;
+
 /**
  * Represents the jasmine syntax.
  */
@@ -7,6 +9,8 @@ public enum JasmineSyntax {
   Version1("ddescribe", "iit"),
   Version2("fdescribe", "fit");
 
+  private static final String SELECTED_SYNTAX = "ddescriber.jasmine.syntax";
+
   private String includeDescribe;
   private String includeIt;
 
@@ -22,4 +26,19 @@ public enum JasmineSyntax {
   String getIncludedit() {
     return includeIt;
   }
+
+  /**
+   * @return The syntax chosen in the dialog, Jasmine 2 by default.
+   */
+  public static JasmineSyntax getSelected() {
+    String name = PropertiesComponent.getInstance().getValue(SELECTED_SYNTAX, Version2.name());
+    return Version1.name().equals(name) ? Version1 : Version2;
+  }
+
+  /**
+   * Remember the syntax for the next time the tests are changed.
+   */
+  public static void setSelected(JasmineSyntax syntax) {
+    PropertiesComponent.getInstance().setValue(SELECTED_SYNTAX, syntax.name());
+  }
 }
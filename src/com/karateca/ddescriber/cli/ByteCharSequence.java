@@ -0,0 +1,56 @@
+package com.karateca.ddescriber.cli;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the bytes of a file as characters, one byte per character, without decoding it.
+ * <p/>
+ * The keywords, quotes and line breaks the scanner looks for are ASCII, so they have the same
+ * value in any ASCII compatible encoding such as UTF-8. The other characters only have to be
+ * different from them.
+ */
+class ByteCharSequence implements CharSequence {
+  private final ByteBuffer buffer;
+  private final int offset;
+  private final int length;
+
+  /**
+   * @param buffer The bytes from its position to its limit.
+   */
+  ByteCharSequence(ByteBuffer buffer) {
+    this(buffer, buffer.position(), buffer.remaining());
+  }
+
+  private ByteCharSequence(ByteBuffer buffer, int offset, int length) {
+    this.buffer = buffer;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  @Override
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public char charAt(int index) {
+    return (char) (buffer.get(offset + index) & 0xff);
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    if (start < 0 || end > length || start > end) {
+      throw new IndexOutOfBoundsException("[" + start + ", " + end + ") of " + length);
+    }
+    return new ByteCharSequence(buffer, offset + start, end - start);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      builder.append(charAt(i));
+    }
+    return builder.toString();
+  }
+}
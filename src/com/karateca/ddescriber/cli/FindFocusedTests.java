@@ -0,0 +1,307 @@
+package com.karateca.ddescriber.cli;
+
+import com.karateca.ddescriber.core.JasmineScanner;
+import com.karateca.ddescriber.core.SpecFiles;
+import com.karateca.ddescriber.core.TestState;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Command line check that fails when a spec file has a focused suite or unit test: fdescribe(),
+ * ddescribe(), fit() or iit(). Runs without the IDE, so it can be used before a merge:
+ * <pre>
+ *   java -cp ddescriber.jar com.karateca.ddescriber.cli.FindFocusedTests src test
+ * </pre>
+ * Prints file:line for every focused test and exits with 1 when there is any, 0 when there are
+ * none and 2 when a file can't be read.
+ * <p/>
+ * The directories are walked in parallel and every file is scanned as bytes, without decoding
+ * it to a String. Large files are memory mapped.
+ */
+public class FindFocusedTests {
+  static final int EXIT_CLEAN = 0;
+  static final int EXIT_FOCUSED = 1;
+  static final int EXIT_ERROR = 2;
+
+  private static final String[] SKIPPED_DIRECTORIES = {"node_modules", "bower_components"};
+  // Smaller files are read, mapping them costs more than copying them.
+  private static final int MAP_THRESHOLD = 64 * 1024;
+  private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+  private final ExecutorService executor;
+  private final AtomicInteger pendingTasks = new AtomicInteger();
+  private final CountDownLatch done = new CountDownLatch(1);
+  private final Queue<Finding> findings = new ConcurrentLinkedQueue<Finding>();
+  private final Queue<String> errors = new ConcurrentLinkedQueue<String>();
+
+  /**
+   * A focused test in a file.
+   */
+  static class Finding {
+    final String path;
+    final int lineNumber;
+    final String keyword;
+
+    Finding(String path, int lineNumber, String keyword) {
+      this.path = path;
+      this.lineNumber = lineNumber;
+      this.keyword = keyword;
+    }
+
+    @Override
+    public String toString() {
+      return path + ":" + lineNumber + ": " + keyword;
+    }
+  }
+
+  FindFocusedTests(int threadCount) {
+    executor = Executors.newFixedThreadPool(threadCount);
+  }
+
+  public static void main(String[] args) {
+    System.exit(run(args, System.out, System.err));
+  }
+
+  /**
+   * @param args The files and directories to check.
+   * @return The exit code.
+   */
+  static int run(String[] args, PrintStream out, PrintStream err) {
+    if (args.length == 0) {
+      err.println("Usage: FindFocusedTests <file or directory>...");
+      return EXIT_ERROR;
+    }
+
+    FindFocusedTests check = new FindFocusedTests(Runtime.getRuntime().availableProcessors());
+    List<Finding> findings;
+    try {
+      findings = check.find(args);
+    } catch (InterruptedException e) {
+      err.println("Interrupted");
+      return EXIT_ERROR;
+    }
+
+    for (Finding finding : findings) {
+      out.println(finding);
+    }
+    for (String error : check.errors) {
+      err.println(error);
+    }
+
+    if (!check.errors.isEmpty()) {
+      return EXIT_ERROR;
+    }
+    return findings.isEmpty() ? EXIT_CLEAN : EXIT_FOCUSED;
+  }
+
+  /**
+   * @return The files and directories that could not be checked, and why.
+   */
+  Collection<String> getErrors() {
+    return errors;
+  }
+
+  /**
+   * Check the files and the directories below the paths.
+   *
+   * @return The focused tests, sorted by file and line.
+   */
+  List<Finding> find(String[] paths) throws InterruptedException {
+    pendingTasks.incrementAndGet();
+    try {
+      for (String path : paths) {
+        File file = new File(path);
+        if (!file.exists()) {
+          errors.add(path + ": not found");
+        } else if (file.isDirectory()) {
+          submitDirectory(file);
+        } else {
+          submitFile(file);
+        }
+      }
+    } finally {
+      taskDone();
+    }
+
+    done.await();
+    executor.shutdown();
+
+    List<Finding> result = new ArrayList<Finding>(findings);
+    Collections.sort(result, new Comparator<Finding>() {
+      @Override
+      public int compare(Finding left, Finding right) {
+        int result = left.path.compareTo(right.path);
+        return result != 0 ? result : left.lineNumber - right.lineNumber;
+      }
+    });
+    return result;
+  }
+
+  private void submitDirectory(final File directory) {
+    submit(new Runnable() {
+      @Override
+      public void run() {
+        File[] children = directory.listFiles();
+        if (children == null) {
+          errors.add(directory.getPath() + ": can't list the directory");
+          return;
+        }
+
+        for (File child : children) {
+          if (child.isDirectory()) {
+            if (!isSkipped(child)) {
+              submitDirectory(child);
+            }
+          } else if (SpecFiles.isSpecFileName(child.getName())) {
+            submitFile(child);
+          }
+        }
+      }
+    });
+  }
+
+  private void submitFile(final File file) {
+    submit(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          scanFile(file);
+        } catch (IOException e) {
+          errors.add(file.getPath() + ": " + e.getMessage());
+        } catch (RuntimeException e) {
+          // For example a file truncated while it is mapped.
+          errors.add(file.getPath() + ": " + e);
+        }
+      }
+    });
+  }
+
+  /**
+   * Run a task, the check is done when the last task ends. A task that fails is an error, so the
+   * check doesn't pass with files that were not scanned.
+   */
+  private void submit(final Runnable task) {
+    pendingTasks.incrementAndGet();
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          task.run();
+        } catch (RuntimeException e) {
+          errors.add(String.valueOf(e));
+        } finally {
+          taskDone();
+        }
+      }
+    });
+  }
+
+  private void taskDone() {
+    if (pendingTasks.decrementAndGet() == 0) {
+      done.countDown();
+    }
+  }
+
+  private static boolean isSkipped(File directory) {
+    String name = directory.getName();
+    if (name.startsWith(".")) {
+      return true;
+    }
+    for (String skipped : SKIPPED_DIRECTORIES) {
+      if (name.equals(skipped)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void scanFile(File file) throws IOException {
+    FileInputStream stream = new FileInputStream(file);
+    try {
+      FileChannel channel = stream.getChannel();
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("File too large");
+      }
+
+      ByteBuffer buffer;
+      if (size >= MAP_THRESHOLD) {
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      } else {
+        buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+          // Keep reading.
+        }
+        buffer.flip();
+      }
+
+      skipByteOrderMark(buffer);
+      scan(file.getPath(), new ByteCharSequence(buffer));
+    } finally {
+      stream.close();
+    }
+  }
+
+  /**
+   * Skip the UTF-8 byte order mark some editors write, the first line would not start with the
+   * describe or it otherwise.
+   */
+  private static void skipByteOrderMark(ByteBuffer buffer) {
+    if (buffer.remaining() >= UTF8_BOM.length) {
+      for (int i = 0; i < UTF8_BOM.length; i++) {
+        if (buffer.get(buffer.position() + i) != UTF8_BOM[i]) {
+          return;
+        }
+      }
+      buffer.position(buffer.position() + UTF8_BOM.length);
+    }
+  }
+
+  /**
+   * Find the focused tests of a file.
+   *
+   * @param path The path to report.
+   * @param text The contents of the file.
+   */
+  void scan(final String path, final CharSequence text) {
+    new JasmineScanner(text).scan(new JasmineScanner.MatchListener() {
+      @Override
+      public void matchFound(JasmineScanner.Match match) {
+        if (match.getTestState() != TestState.Included) {
+          return;
+        }
+
+        // Report the line of the keyword, the parenthesis can be on a following line.
+        int lineNumber = match.getLineNumber();
+        int keywordEnd = match.getKeywordOffset();
+        while (Character.isLetter(text.charAt(keywordEnd))) {
+          keywordEnd++;
+        }
+        for (int i = keywordEnd; i < match.getEndOffset(); i++) {
+          if (text.charAt(i) == '\n') {
+            lineNumber--;
+          }
+        }
+
+        findings.add(new Finding(path, lineNumber + 1,
+            text.subSequence(match.getKeywordOffset(), keywordEnd).toString()));
+      }
+    });
+  }
+}
@@ -0,0 +1,128 @@
+package com.karateca.ddescriber.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Collects the replacements to make in a text and makes them all at once.
+ * <p/>
+ * The replacements are made from the bottom of the text up, so the offsets of the ones that are
+ * still pending don't move.
+ */
+public class EditPlan {
+
+  private final List<Replacement> replacements = new ArrayList<Replacement>();
+
+  /**
+   * A range of the document and the text that replaces it.
+   */
+  public static class Replacement {
+    private final int startOffset;
+    private final int endOffset;
+    private final String text;
+
+    Replacement(int startOffset, int endOffset, String text) {
+      this.startOffset = startOffset;
+      this.endOffset = endOffset;
+      this.text = text;
+    }
+
+    public int getStartOffset() {
+      return startOffset;
+    }
+
+    public int getEndOffset() {
+      return endOffset;
+    }
+
+    public String getText() {
+      return text;
+    }
+  }
+
+  /**
+   * Add a replacement to the plan.
+   *
+   * @param startOffset The start of the range to replace.
+   * @param endOffset The end of the range to replace.
+   * @param text The new text.
+   */
+  public void replace(int startOffset, int endOffset, String text) {
+    if (startOffset < 0 || endOffset < startOffset) {
+      throw new IllegalArgumentException(
+          "Invalid range: [" + startOffset + ", " + endOffset + ")");
+    }
+    replacements.add(new Replacement(startOffset, endOffset, text));
+  }
+
+  public boolean isEmpty() {
+    return replacements.isEmpty();
+  }
+
+  /**
+   * Get the replacements in the order they are applied, from the bottom of the document up.
+   *
+   * @return The replacements sorted by start offset, descending.
+   * @throws IllegalArgumentException When two ranges overlap.
+   */
+  public List<Replacement> getReplacements() {
+    List<Replacement> sorted = new ArrayList<Replacement>(replacements);
+    Collections.sort(sorted, new Comparator<Replacement>() {
+      @Override
+      public int compare(Replacement left, Replacement right) {
+        int result = compareInts(right.startOffset, left.startOffset);
+        return result != 0 ? result : compareInts(right.endOffset, left.endOffset);
+      }
+    });
+
+    for (int i = 1; i < sorted.size(); i++) {
+      Replacement below = sorted.get(i - 1);
+      Replacement above = sorted.get(i);
+      if (above.endOffset > below.startOffset ||
+          (above.startOffset == below.startOffset && above.endOffset == below.endOffset)) {
+        throw new IllegalArgumentException(String.format(
+            "Overlapping replacements: [%d, %d) and [%d, %d)",
+            above.startOffset, above.endOffset, below.startOffset, below.endOffset));
+      }
+    }
+
+    return sorted;
+  }
+
+  private static int compareInts(int left, int right) {
+    return left < right ? -1 : (left == right ? 0 : 1);
+  }
+
+  /**
+   * Make all the replacements in a copy of a text.
+   *
+   * @param text The text to change.
+   * @return The text after the replacements.
+   * @throws IllegalArgumentException When two ranges overlap or go past the end of the text.
+   */
+  public String apply(CharSequence text) {
+    List<Replacement> sorted = getReplacements();
+    StringBuilder result = new StringBuilder(text);
+    if (!sorted.isEmpty()) {
+      checkEnd(sorted, text.length());
+    }
+    for (Replacement replacement : sorted) {
+      result.replace(replacement.startOffset, replacement.endOffset, replacement.text);
+    }
+    return result.toString();
+  }
+
+  /**
+   * @param sorted The replacements, from the bottom up.
+   * @param length The length of the text.
+   * @throws IllegalArgumentException When the last replacement goes past the end of the text.
+   */
+  protected static void checkEnd(List<Replacement> sorted, int length) {
+    int lastOffset = sorted.get(0).endOffset;
+    if (lastOffset > length) {
+      throw new IllegalArgumentException("Replacement past the end of the text: " + lastOffset);
+    }
+  }
+}
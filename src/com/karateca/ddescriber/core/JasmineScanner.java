@@ -0,0 +1,765 @@
+package com.karateca.ddescriber.core;
+
+
+/**
+ * Single pass scanner that finds the suites and unit tests in a jasmine file.
+ * <p/>
+ * It walks the text once, keeping track of the line number and the indentation, and reports the
+ * same matches as {@code ^\s*[ifx]?it\s*\(|^\s*[dfx]?describe\s*\(} without using regular
+ * expressions. It only needs the text, so it runs without the IDE.
+ * <p/>
+ * The lines that start inside a block comment, a string or a template literal are skipped. The
+ * scanner follows the comments, strings, template literals and regular expressions while it
+ * walks the text, so it doesn't read the text again to find them.
+ */
+public class JasmineScanner {
+
+  /**
+   * Receives every describe() or it() found by the scanner.
+   */
+  public interface MatchListener {
+    /**
+     * @param match The match. The same instance is reused for every match.
+     */
+    void matchFound(Match match);
+  }
+
+  /**
+   * Receives the comments, strings and template literals that span more than one line. The lines
+   * that start inside them are not scanned.
+   */
+  public interface RegionListener {
+    /**
+     * @param startOffset The offset of the comment or the opening quote.
+     * @param endOffset The offset after the end of the comment or the closing quote.
+     */
+    void regionFound(int startOffset, int endOffset);
+  }
+
+  /**
+   * Tells where a scan that passed its last line can stop. Used to scan again after an edit: the
+   * scan goes on until the text is read the same way as before the edit.
+   */
+  public interface StopCondition {
+    /**
+     * @param lineStart The start of a line that starts in code, after the last match.
+     * @return True when the scan can stop before the line.
+     */
+    boolean canStopAt(int lineStart);
+  }
+
+  /**
+   * A describe() or it() found in the text.
+   */
+  public static class Match {
+    private int startOffset;
+    private int keywordOffset;
+    private int endOffset;
+    private int lineNumber;
+    private int indentation;
+    private boolean describe;
+    private TestState testState;
+
+    /**
+     * @return The start of the match, including the blank lines and white space before it.
+     */
+    public int getStartOffset() {
+      return startOffset;
+    }
+
+    /**
+     * @return The offset of the describe or it, including the prefix.
+     */
+    public int getKeywordOffset() {
+      return keywordOffset;
+    }
+
+    /**
+     * @return The offset right after the open parenthesis.
+     */
+    public int getEndOffset() {
+      return endOffset;
+    }
+
+    /**
+     * @return The zero based line number of the end offset.
+     */
+    public int getLineNumber() {
+      return lineNumber;
+    }
+
+    /**
+     * @return The number of white space characters before the describe or it.
+     */
+    public int getIndentation() {
+      return indentation;
+    }
+
+    public boolean isDescribe() {
+      return describe;
+    }
+
+    /**
+     * @return Included for [fd]describe and [fi]it, excluded for xdescribe and xit.
+     */
+    public TestState getTestState() {
+      return testState;
+    }
+  }
+
+  private static final String IT = "it";
+  // Check for cancellation and the deadline every 1024 lines, and every 64K characters for the
+  // long lines of minified files.
+  private static final int CHECK_INTERVAL_MASK = 1023;
+  private static final int CHECK_INTERVAL_CHARS = 64 * 1024;
+  private static final String DESCRIBE = "describe";
+  // A slash after these words starts a regular expression, not a division.
+  private static final String[] KEYWORDS_BEFORE_EXPRESSION = {"return", "typeof", "instanceof",
+      "in", "of", "new", "delete", "void", "throw", "case", "do", "else", "yield", "await"};
+
+  // The lexical states that can continue on the next line.
+  private static final int CODE = 0;
+  private static final int BLOCK_COMMENT = 1;
+  private static final int TEMPLATE = 2;
+  private static final int SINGLE_QUOTED = 3;
+  private static final int DOUBLE_QUOTED = 4;
+
+  // The kinds of characters in code, by ASCII code. The other characters are words.
+  private static final byte KIND_WORD = 0;
+  private static final byte KIND_PUNCTUATION = 1;
+  private static final byte KIND_SPACE = 2;
+  private static final byte KIND_LINE_BREAK = 3;
+  private static final byte KIND_SLASH = 4;
+  private static final byte KIND_QUOTE = 5;
+  private static final byte KIND_BACK_QUOTE = 6;
+  private static final byte KIND_OPEN_BRACE = 7;
+  private static final byte KIND_CLOSE_BRACE = 8;
+  // ) and ], a slash after them is a division.
+  private static final byte KIND_CLOSE = 9;
+  private static final byte[] CHAR_KINDS = new byte[128];
+
+  static {
+    for (char c = 0; c < CHAR_KINDS.length; c++) {
+      if (isWhiteSpace(c)) {
+        CHAR_KINDS[c] = KIND_SPACE;
+      } else if (!Character.isJavaIdentifierPart(c)) {
+        CHAR_KINDS[c] = KIND_PUNCTUATION;
+      }
+    }
+    CHAR_KINDS['\n'] = KIND_LINE_BREAK;
+    CHAR_KINDS['/'] = KIND_SLASH;
+    CHAR_KINDS['\''] = KIND_QUOTE;
+    CHAR_KINDS['"'] = KIND_QUOTE;
+    CHAR_KINDS['`'] = KIND_BACK_QUOTE;
+    CHAR_KINDS['{'] = KIND_OPEN_BRACE;
+    CHAR_KINDS['}'] = KIND_CLOSE_BRACE;
+    CHAR_KINDS[')'] = KIND_CLOSE;
+    CHAR_KINDS[']'] = KIND_CLOSE;
+  }
+
+  // The token before a slash tells if it starts a regular expression.
+  private static final int TOKEN_PUNCTUATION = 0;
+  private static final int TOKEN_VALUE = 1;
+  private static final int TOKEN_WORD = 2;
+
+  private final CharSequence text;
+  private Runnable cancellationCheck;
+  private long deadline = Long.MAX_VALUE;
+  private RegionListener regionListener;
+  private StopCondition stopCondition;
+  private int stopOffset;
+
+  // The state of the scan.
+  private int state;
+  private int previousToken;
+  private int previousWordStart;
+  private int previousWordEnd;
+  private boolean lineContinued;
+  // The open braces of every ${ in the template literals around the code.
+  private int[] templateBraces = new int[4];
+  private int templateDepth;
+  private int regionStart;
+  private int regionStartLine;
+  private int nextCheckOffset;
+
+  public JasmineScanner(CharSequence text) {
+    this.text = text;
+  }
+
+  /**
+   * @param cancellationCheck Called periodically while scanning. It can throw to stop the scan.
+   */
+  public void setCancellationCheck(Runnable cancellationCheck) {
+    this.cancellationCheck = cancellationCheck;
+  }
+
+  /**
+   * @param deadline The time (in milliseconds) when the scan stops and keeps the partial results.
+   */
+  public void setDeadline(long deadline) {
+    this.deadline = deadline;
+  }
+
+  /**
+   * @param regionListener Receives the comments, strings and template literals that span lines.
+   */
+  public void setRegionListener(RegionListener regionListener) {
+    this.regionListener = regionListener;
+  }
+
+  /**
+   * @param stopCondition Decides if a scan can stop after its last line. Without it the scan
+   * stops right after the last line.
+   */
+  public void setStopCondition(StopCondition stopCondition) {
+    this.stopCondition = stopCondition;
+  }
+
+  /**
+   * @return The start of the first line the last scan did not read, or the length of the text.
+   */
+  public int getStopOffset() {
+    return stopOffset;
+  }
+
+  /**
+   * Scan the text and notify every match.
+   *
+   * @param listener Receives the matches in document order.
+   * @return True when the whole text was scanned, false when the deadline was reached.
+   */
+  public boolean scan(MatchListener listener) {
+    return scan(0, 0, text.length(), listener);
+  }
+
+  /**
+   * Scan the lines that start between two offsets. The first line must not start inside a
+   * comment, a string or a template literal.
+   *
+   * @param fromOffset The start of the first line to scan.
+   * @param fromLineNumber The zero based line number of the first line.
+   * @param toOffset Lines starting after this offset are not scanned, unless the stop condition
+   * tells to go on.
+   * @param listener Receives the matches in document order.
+   * @return True when all the lines were scanned, false when the deadline was reached.
+   */
+  public boolean scan(int fromOffset, int fromLineNumber, int toOffset, MatchListener listener) {
+    Match match = new Match();
+    int length = text.length();
+    int lineNumber = fromLineNumber;
+    int lineStart = fromOffset;
+
+    state = CODE;
+    previousToken = TOKEN_PUNCTUATION;
+    templateDepth = 0;
+    regionStart = -1;
+    nextCheckOffset = fromOffset + CHECK_INTERVAL_CHARS;
+
+    // Start of the first line in a run of blank lines before the current line.
+    int blankRunStart = fromOffset;
+    int lastMatchEnd = fromOffset;
+
+    while (lineStart < length && (lineStart <= toOffset || !canStopAt(lineStart, lastMatchEnd))) {
+      if (((lineNumber & CHECK_INTERVAL_MASK) == 0 || lineStart >= nextCheckOffset) &&
+          !checkProgress(lineStart)) {
+        stopOffset = lineStart;
+        return false;
+      }
+
+      int keywordStart = skipWhiteSpaceInLine(lineStart, length);
+      // Only the lines that start in code.
+      int keywordEnd = -1;
+      if (state == CODE && templateDepth == 0) {
+        keywordEnd = matchKeyword(keywordStart, length);
+      }
+
+      if (keywordEnd != -1) {
+        // The parenthesis can be on the following lines.
+        int endLineNumber = lineNumber;
+        int offset = keywordEnd;
+        while (offset < length && isWhiteSpace(text.charAt(offset))) {
+          if (text.charAt(offset) == '\n') {
+            endLineNumber++;
+          }
+          offset++;
+        }
+
+        if (offset < length && text.charAt(offset) == '(') {
+          match.startOffset = blankRunStart;
+          match.keywordOffset = keywordStart;
+          match.endOffset = offset + 1;
+          match.lineNumber = endLineNumber;
+          match.indentation = keywordStart - lineStart;
+          match.describe = isDescribe(keywordStart, keywordEnd);
+          match.testState = getTestState(keywordStart, keywordEnd);
+          listener.matchFound(match);
+          lastMatchEnd = match.endOffset;
+        }
+      }
+
+      boolean blankLine = keywordStart == length || text.charAt(keywordStart) == '\n';
+
+      // Move to the next line.
+      lineContinued = false;
+      int lineEnd = lexLine(keywordStart, length, lineNumber);
+      if (lineEnd == -1) {
+        stopOffset = lineStart;
+        return false;
+      }
+      if (lineEnd == length) {
+        endRegion(length, lineNumber, true);
+        stopOffset = length;
+        return true;
+      }
+      if ((state == SINGLE_QUOTED || state == DOUBLE_QUOTED) && !lineContinued) {
+        // The string was not closed.
+        state = CODE;
+        endRegion(lineEnd, lineNumber, false);
+      }
+      if (state == CODE) {
+        // A slash at the start of a line starts a regular expression, so a line that starts in
+        // code is read the same way whatever the line above ends with.
+        previousToken = TOKEN_PUNCTUATION;
+      }
+      lineStart = lineEnd + 1;
+      lineNumber++;
+
+      if (!blankLine) {
+        blankRunStart = lineStart;
+      }
+    }
+
+    if (lineStart >= length) {
+      endRegion(length, lineNumber, true);
+    }
+    stopOffset = Math.min(lineStart, length);
+    return true;
+  }
+
+  /**
+   * A scan can only stop at a line that starts in code, and not between a match and its
+   * parenthesis.
+   */
+  private boolean canStopAt(int lineStart, int lastMatchEnd) {
+    return stopCondition == null ||
+        state == CODE && templateDepth == 0 && lineStart >= lastMatchEnd &&
+            stopCondition.canStopAt(lineStart);
+  }
+
+  /**
+   * Check for cancellation and the deadline.
+   *
+   * @param offset Where the scan is.
+   * @return False when the deadline was reached.
+   */
+  private boolean checkProgress(int offset) {
+    if (cancellationCheck != null) {
+      cancellationCheck.run();
+    }
+    nextCheckOffset = offset + CHECK_INTERVAL_CHARS;
+    return System.currentTimeMillis() < deadline;
+  }
+
+  /**
+   * Follow the comments, strings, template literals and regular expressions until the end of
+   * the line. The lexers stop at the next check offset, so a long line is checked too.
+   *
+   * @return The offset of the line break, the length of the text, or -1 when the deadline was
+   * reached.
+   */
+  private int lexLine(int offset, int length, int lineNumber) {
+    int i = offset;
+    while (i < length && text.charAt(i) != '\n') {
+      if (i >= nextCheckOffset && !checkProgress(i)) {
+        return -1;
+      }
+      switch (state) {
+        case BLOCK_COMMENT:
+          i = lexBlockComment(i, length, lineNumber);
+          break;
+        case TEMPLATE:
+          i = lexTemplate(i, length, lineNumber);
+          break;
+        case SINGLE_QUOTED:
+          i = lexString(i, length, lineNumber, '\'');
+          break;
+        case DOUBLE_QUOTED:
+          i = lexString(i, length, lineNumber, '"');
+          break;
+        default:
+          i = lexCode(i, length, lineNumber);
+      }
+    }
+    return i;
+  }
+
+  /**
+   * Read code until the end of the line or the start of a comment, string or template literal.
+   *
+   * @return The offset where the code stops.
+   */
+  private int lexCode(int i, int length, int lineNumber) {
+    int limit = Math.min(length, nextCheckOffset);
+    while (i < limit) {
+      char c = text.charAt(i);
+      int kind = c < CHAR_KINDS.length ? CHAR_KINDS[c] :
+          Character.isJavaIdentifierPart(c) ? KIND_WORD : KIND_PUNCTUATION;
+
+      switch (kind) {
+        case KIND_LINE_BREAK:
+          return i;
+
+        case KIND_SPACE:
+          i++;
+          break;
+
+        case KIND_WORD:
+          int wordStart = i;
+          i++;
+          while (i < length && isWordPart(text.charAt(i))) {
+            i++;
+          }
+          previousToken = TOKEN_WORD;
+          previousWordStart = wordStart;
+          previousWordEnd = i;
+          break;
+
+        case KIND_SLASH:
+          char next = i + 1 < length ? text.charAt(i + 1) : 0;
+          if (next == '/') {
+            // The line comment ends the line.
+            while (i < length && text.charAt(i) != '\n') {
+              i++;
+            }
+            return i;
+          }
+          if (next == '*') {
+            startRegion(i, lineNumber);
+            state = BLOCK_COMMENT;
+            return i + 2;
+          }
+          if (isRegexAllowed()) {
+            i = skipRegex(i, length);
+            previousToken = TOKEN_VALUE;
+          } else {
+            i++;
+            previousToken = TOKEN_PUNCTUATION;
+          }
+          break;
+
+        case KIND_QUOTE:
+          startRegion(i, lineNumber);
+          state = c == '\'' ? SINGLE_QUOTED : DOUBLE_QUOTED;
+          return i + 1;
+
+        case KIND_BACK_QUOTE:
+          startRegion(i, lineNumber);
+          state = TEMPLATE;
+          return i + 1;
+
+        case KIND_OPEN_BRACE:
+          if (templateDepth > 0) {
+            templateBraces[templateDepth - 1]++;
+          }
+          previousToken = TOKEN_PUNCTUATION;
+          i++;
+          break;
+
+        case KIND_CLOSE_BRACE:
+          if (templateDepth > 0 && templateBraces[templateDepth - 1]-- == 0) {
+            // The end of a ${ } in a template literal.
+            templateDepth--;
+            state = TEMPLATE;
+            return i + 1;
+          }
+          previousToken = TOKEN_PUNCTUATION;
+          i++;
+          break;
+
+        case KIND_CLOSE:
+          previousToken = TOKEN_VALUE;
+          i++;
+          break;
+
+        default:
+          previousToken = TOKEN_PUNCTUATION;
+          i++;
+      }
+    }
+    return i;
+  }
+
+  /**
+   * A slash starts a regular expression after an operator, and a division after a value.
+   */
+  private boolean isRegexAllowed() {
+    if (previousToken == TOKEN_WORD) {
+      int wordLength = previousWordEnd - previousWordStart;
+      for (String keyword : KEYWORDS_BEFORE_EXPRESSION) {
+        if (keyword.length() == wordLength &&
+            regionMatches(previousWordStart, keyword, previousWordEnd)) {
+          return true;
+        }
+      }
+      return false;
+    }
+    return previousToken == TOKEN_PUNCTUATION;
+  }
+
+  private int lexBlockComment(int i, int length, int lineNumber) {
+    int limit = Math.min(length, nextCheckOffset);
+    while (i < limit) {
+      char c = text.charAt(i);
+      if (c == '\n') {
+        return i;
+      }
+      if (c == '*' && i + 1 < length && text.charAt(i + 1) == '/') {
+        state = CODE;
+        endRegion(i + 2, lineNumber, false);
+        return i + 2;
+      }
+      i++;
+    }
+    return i;
+  }
+
+  private int lexTemplate(int i, int length, int lineNumber) {
+    int limit = Math.min(length, nextCheckOffset);
+    while (i < limit) {
+      char c = text.charAt(i);
+      if (c == '\n') {
+        return i;
+      }
+      if (c == '\\') {
+        i = skipEscape(i, length);
+      } else if (c == '`') {
+        state = CODE;
+        previousToken = TOKEN_VALUE;
+        endRegion(i + 1, lineNumber, false);
+        return i + 1;
+      } else if (c == '$' && i + 1 < length && text.charAt(i + 1) == '{') {
+        pushTemplate();
+        state = CODE;
+        previousToken = TOKEN_PUNCTUATION;
+        return i + 2;
+      } else {
+        i++;
+      }
+    }
+    return i;
+  }
+
+  private int lexString(int i, int length, int lineNumber, char quote) {
+    int limit = Math.min(length, nextCheckOffset);
+    while (i < limit) {
+      char c = text.charAt(i);
+      if (c == '\n') {
+        return i;
+      }
+      if (c == '\\') {
+        lineContinued = isLineBreakAt(i + 1, length);
+        i = skipEscape(i, length);
+      } else if (c == quote) {
+        state = CODE;
+        previousToken = TOKEN_VALUE;
+        endRegion(i + 1, lineNumber, false);
+        return i + 1;
+      } else {
+        i++;
+      }
+    }
+    return i;
+  }
+
+  /**
+   * Skip a regular expression literal, it ends at the line break when it is not closed.
+   *
+   * @return The offset after the closing slash.
+   */
+  private int skipRegex(int i, int length) {
+    boolean inClass = false;
+    i++;
+    while (i < length) {
+      char c = text.charAt(i);
+      if (c == '\n') {
+        return i;
+      }
+      if (c == '\\') {
+        i = skipEscape(i, length);
+        continue;
+      }
+      if (c == '[') {
+        inClass = true;
+      } else if (c == ']') {
+        inClass = false;
+      } else if (c == '/' && !inClass) {
+        return i + 1;
+      }
+      i++;
+    }
+    return i;
+  }
+
+  /**
+   * Skip a backslash and the character after it, unless it is a line break.
+   */
+  private int skipEscape(int i, int length) {
+    if (i + 1 < length && text.charAt(i + 1) != '\n') {
+      return i + 2;
+    }
+    return i + 1;
+  }
+
+  /**
+   * @return True when a line break (\n or \r\n) starts at the offset.
+   */
+  private boolean isLineBreakAt(int offset, int length) {
+    if (offset < length && text.charAt(offset) == '\r') {
+      offset++;
+    }
+    return offset < length && text.charAt(offset) == '\n';
+  }
+
+  private static boolean isWordPart(char c) {
+    if (c < CHAR_KINDS.length) {
+      return CHAR_KINDS[c] == KIND_WORD;
+    }
+    return Character.isJavaIdentifierPart(c);
+  }
+
+  private void pushTemplate() {
+    if (templateDepth == templateBraces.length) {
+      int[] newBraces = new int[templateDepth * 2];
+      System.arraycopy(templateBraces, 0, newBraces, 0, templateDepth);
+      templateBraces = newBraces;
+    }
+    templateBraces[templateDepth++] = 0;
+  }
+
+  /**
+   * Remember where a comment, string or template literal starts, when it is not nested in a
+   * template literal.
+   */
+  private void startRegion(int offset, int lineNumber) {
+    if (templateDepth == 0) {
+      regionStart = offset;
+      regionStartLine = lineNumber;
+    }
+  }
+
+  /**
+   * Report the comment, string or template literal that ended if it spans lines.
+   *
+   * @param endOfText True when the text ends before the comment, string or template literal.
+   */
+  private void endRegion(int offset, int lineNumber, boolean endOfText) {
+    if (regionStart == -1 || !endOfText && (state != CODE || templateDepth > 0)) {
+      return;
+    }
+    if (regionListener != null && regionStartLine != lineNumber) {
+      regionListener.regionFound(regionStart, offset);
+    }
+    regionStart = -1;
+  }
+
+  /**
+   * Find the end of the string literal that starts at an offset: a single or double quoted
+   * string, or a template literal without placeholders. The string must be closed in the same
+   * line.
+   *
+   * @param text The text with the string.
+   * @param offset The offset of the opening quote.
+   * @return The offset after the closing quote, or -1 when there is no string literal.
+   */
+  public static int findStringEnd(CharSequence text, int offset) {
+    int length = text.length();
+    if (offset >= length) {
+      return -1;
+    }
+    char quote = text.charAt(offset);
+    if (quote != '\'' && quote != '"' && quote != '`') {
+      return -1;
+    }
+
+    for (int i = offset + 1; i < length; i++) {
+      char c = text.charAt(i);
+      if (c == quote) {
+        return i + 1;
+      }
+      if (c == '\n' || c == '$' && quote == '`' && i + 1 < length && text.charAt(i + 1) == '{') {
+        return -1;
+      }
+      if (c == '\\') {
+        i++;
+        if (i < length && text.charAt(i) == '\n') {
+          return -1;
+        }
+      }
+    }
+    return -1;
+  }
+
+  private int skipWhiteSpaceInLine(int offset, int length) {
+    while (offset < length && text.charAt(offset) != '\n' && isWhiteSpace(text.charAt(offset))) {
+      offset++;
+    }
+    return offset;
+  }
+
+  /**
+   * Match [ifx]?it or [dfx]?describe.
+   *
+   * @return The end of the keyword or -1 when there is no keyword at the offset.
+   */
+  private int matchKeyword(int offset, int length) {
+    if (offset >= length) {
+      return -1;
+    }
+
+    char first = text.charAt(offset);
+    if ((first == 'i' || first == 'f' || first == 'x') && regionMatches(offset + 1, IT, length)) {
+      return offset + 1 + IT.length();
+    }
+    if (regionMatches(offset, IT, length)) {
+      return offset + IT.length();
+    }
+    if ((first == 'd' || first == 'f' || first == 'x') && regionMatches(offset + 1, DESCRIBE, length)) {
+      return offset + 1 + DESCRIBE.length();
+    }
+    if (regionMatches(offset, DESCRIBE, length)) {
+      return offset + DESCRIBE.length();
+    }
+    return -1;
+  }
+
+  private boolean isDescribe(int keywordStart, int keywordEnd) {
+    return keywordEnd - keywordStart >= DESCRIBE.length();
+  }
+
+  private TestState getTestState(int keywordStart, int keywordEnd) {
+    int keywordLength = keywordEnd - keywordStart;
+    if (keywordLength == IT.length() || keywordLength == DESCRIBE.length()) {
+      return TestState.NotModified;
+    }
+    return text.charAt(keywordStart) == 'x' ? TestState.Excluded : TestState.Included;
+  }
+
+  private boolean regionMatches(int offset, String value, int length) {
+    if (offset + value.length() > length) {
+      return false;
+    }
+    for (int i = 0; i < value.length(); i++) {
+      if (text.charAt(offset + i) != value.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Same as \s in a java regular expression.
+   */
+  private static boolean isWhiteSpace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == '\u000B';
+  }
+}
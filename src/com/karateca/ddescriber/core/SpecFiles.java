@@ -0,0 +1,35 @@
+package com.karateca.ddescriber.core;
+
+/**
+ * The files that can have jasmine tests. The index and the command line check use the same
+ * extensions.
+ */
+public final class SpecFiles {
+  private static final String[] EXTENSIONS = {"js", "jsx", "ts", "tsx"};
+
+  private SpecFiles() {
+  }
+
+  /**
+   * @param extension The extension of a file, without the dot.
+   */
+  public static boolean isSpecExtension(String extension) {
+    if (extension == null) {
+      return false;
+    }
+    for (String specExtension : EXTENSIONS) {
+      if (specExtension.equalsIgnoreCase(extension)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @param fileName The name of a file.
+   */
+  public static boolean isSpecFileName(String fileName) {
+    int dot = fileName.lastIndexOf('.');
+    return dot != -1 && isSpecExtension(fileName.substring(dot + 1));
+  }
+}
@@ -0,0 +1,735 @@
+package com.karateca.ddescriber.core;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Stores the suites and unit tests of a file in parallel arrays, one row per test in document
+ * order. Each row has the position, name, state and parent of a test.
+ * <p/>
+ * The names are ranges of the text until they are read. Only needs the text, so it can be used
+ * without the IDE.
+ */
+public class TestRows {
+  public static final int NO_PARENT = -1;
+
+  private static final String IT = "it";
+  private static final String DESCRIBE = "describe";
+  private static final TestState[] STATES = TestState.values();
+  private static final byte NO_PENDING_CHANGE = -1;
+
+  private CharSequence source;
+  private int size;
+  private int[] startOffsets;
+  private int[] endOffsets;
+  private int[] lineNumbers;
+  private int[] indentations;
+  private int[] parents;
+  private int[] nameStarts;
+  private int[] nameEnds;
+  private boolean[] describes;
+  private byte[] states;
+  private byte[] pendingStates;
+  private String[] names;
+  // The names read so far, shared by the tests with the same name. The names are read lazily,
+  // by more than one thread at a time, and the scans of different files don't share a lock.
+  private final ConcurrentMap<String, String> internedNames =
+      new ConcurrentHashMap<String, String>();
+
+  // The children of every row, grouped by parent. The children of the row i go from
+  // childOffsets[i + 1] to childOffsets[i + 2], the children of the root start at zero.
+  private int[] childOffsets = new int[2];
+  private int[] children = new int[0];
+
+  // The number of unit tests by state, followed by the number of suites by state.
+  private final int[] counts = new int[STATES.length * 2];
+
+  /**
+   * @param source The text the tests are read from.
+   * @param capacity The initial number of rows.
+   */
+  public TestRows(CharSequence source, int capacity) {
+    this.source = source;
+    allocate(Math.max(capacity, 1));
+  }
+
+  /**
+   * Find all the suites and unit tests in a text, with their parents.
+   *
+   * @param text The contents of a jasmine file.
+   * @return The tests in document order.
+   */
+  public static TestRows parse(CharSequence text) {
+    final TestRows rows = new TestRows(text, 16);
+    new JasmineScanner(text).scan(new JasmineScanner.MatchListener() {
+      @Override
+      public void matchFound(JasmineScanner.Match match) {
+        rows.add(match.getEndOffset(), match.getLineNumber());
+      }
+    });
+    rows.computeParents();
+    return rows;
+  }
+
+  private String intern(String name) {
+    String interned = internedNames.putIfAbsent(name, name);
+    return interned == null ? name : interned;
+  }
+
+  private void allocate(int capacity) {
+    startOffsets = grow(startOffsets, capacity);
+    endOffsets = grow(endOffsets, capacity);
+    lineNumbers = grow(lineNumbers, capacity);
+    indentations = grow(indentations, capacity);
+    parents = grow(parents, capacity);
+    nameStarts = grow(nameStarts, capacity);
+    nameEnds = grow(nameEnds, capacity);
+    describes = describes == null ? new boolean[capacity] : Arrays.copyOf(describes, capacity);
+    states = states == null ? new byte[capacity] : Arrays.copyOf(states, capacity);
+    pendingStates = pendingStates == null ? new byte[capacity] : Arrays.copyOf(pendingStates, capacity);
+    names = names == null ? new String[capacity] : Arrays.copyOf(names, capacity);
+  }
+
+  private static int[] grow(int[] array, int capacity) {
+    return array == null ? new int[capacity] : Arrays.copyOf(array, capacity);
+  }
+
+  /**
+   * Make room for a number of rows. Subclasses with columns of their own grow them here too.
+   */
+  protected void ensureCapacity(int capacity) {
+    if (capacity > startOffsets.length) {
+      allocate(Math.max(capacity, startOffsets.length * 2));
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return The text the tests are read from.
+   */
+  public CharSequence getSource() {
+    return source;
+  }
+
+  /**
+   * Add the test that ends at an offset of the text.
+   *
+   * @param endOffset The offset after the open parenthesis of the describe or it.
+   * @param lineNumber The zero based line number of the end offset.
+   */
+  public void add(int endOffset, int lineNumber) {
+    int startOfLine = endOffset;
+    while (startOfLine > 0 && source.charAt(startOfLine - 1) != '\n') {
+      startOfLine--;
+    }
+    int endOfLine = endOffset;
+    while (endOfLine < source.length() && source.charAt(endOfLine) != '\n') {
+      endOfLine++;
+    }
+    add(endOffset, lineNumber, startOfLine, endOfLine);
+  }
+
+  /**
+   * Add the test that ends at an offset of the text, when the bounds of its line are known.
+   *
+   * @param endOffset The offset after the open parenthesis of the describe or it.
+   * @param lineNumber The zero based line number of the end offset.
+   * @param startOfLine The start of the line.
+   * @param endOfLine The end of the line, without the line break.
+   */
+  public void add(int endOffset, int lineNumber, int startOfLine, int endOfLine) {
+    ensureCapacity(size + 1);
+    int index = size++;
+
+    // Inspect the characters of the line in place instead of copying it.
+    CharSequence text = source;
+    int firstChar = skipWhiteSpace(text, startOfLine, endOfLine);
+
+    // \s*[xdf]?describe.*
+    describes[index] = keywordEnd(text, firstChar, endOfLine, DESCRIBE, "xdf") != -1;
+
+    TestState testState;
+    if (prefixedKeywordAt(text, firstChar, endOfLine, DESCRIBE, "fd") ||
+        prefixedKeywordAt(text, firstChar, endOfLine, IT, "fi")) {
+      testState = TestState.Included;
+    } else if (prefixedKeywordAt(text, firstChar, endOfLine, DESCRIBE, "x") ||
+        prefixedKeywordAt(text, firstChar, endOfLine, IT, "x")) {
+      testState = TestState.Excluded;
+    } else {
+      testState = TestState.NotModified;
+    }
+    states[index] = (byte) testState.ordinal();
+    pendingStates[index] = NO_PENDING_CHANGE;
+    counts[countIndex(index)]++;
+
+    if (!findStringName(index, text, endOffset)) {
+      findTestText(index, text, startOfLine, endOfLine);
+    }
+
+    // The indentation is the position of the first describe or it in the line.
+    int indentation = 0;
+    for (int i = startOfLine; i < endOfLine; i++) {
+      if (keywordEnd(text, i, endOfLine, IT, "xfi") != -1 ||
+          keywordEnd(text, i, endOfLine, DESCRIBE, "xfd") != -1) {
+        indentation = i - startOfLine;
+        break;
+      }
+    }
+
+    endOffsets[index] = endOffset;
+    lineNumbers[index] = lineNumber + 1;
+    indentations[index] = indentation;
+    startOffsets[index] = startOfLine + indentation;
+    parents[index] = NO_PARENT;
+  }
+
+  /**
+   * Find the parent of every test, the suite it belongs to. Follows the indentation the same
+   * way the tree is built.
+   */
+  public void computeParents() {
+    int[] stack = new int[16];
+    int stackSize = 0;
+    int parent = NO_PARENT;
+    int last = NO_PARENT;
+    int currentIndentation = -1;
+
+    for (int i = 0; i < size; i++) {
+      int indentation = indentations[i];
+
+      if (indentation > currentIndentation) {
+        if (stackSize == stack.length) {
+          stack = Arrays.copyOf(stack, stackSize * 2);
+        }
+        stack[stackSize++] = parent;
+        parent = last;
+      } else if (indentation < currentIndentation) {
+        do {
+          // Find a parent that is not under the current level.
+          parent = stackSize == 0 ? NO_PARENT : stack[--stackSize];
+        } while (parent != NO_PARENT && indentations[parent] >= indentation);
+      }
+
+      parents[i] = parent;
+      last = i;
+      currentIndentation = indentation;
+    }
+
+    computeChildren();
+  }
+
+  private void computeChildren() {
+    childOffsets = new int[size + 2];
+    children = new int[size];
+
+    // Count the children of every parent, then turn the counts into offsets.
+    for (int i = 0; i < size; i++) {
+      childOffsets[parents[i] + 2]++;
+    }
+    for (int i = 1; i < childOffsets.length; i++) {
+      childOffsets[i] += childOffsets[i - 1];
+    }
+
+    // The rows are in document order, so the children of every parent stay sorted.
+    int[] next = Arrays.copyOf(childOffsets, childOffsets.length);
+    for (int i = 0; i < size; i++) {
+      children[next[parents[i] + 1]++] = i;
+    }
+  }
+
+  /**
+   * @param parent A row or {@link #NO_PARENT} for the top level.
+   */
+  public int getChildCount(int parent) {
+    return childOffsets[parent + 2] - childOffsets[parent + 1];
+  }
+
+  /**
+   * @param parent A row or {@link #NO_PARENT} for the top level.
+   * @param index The position of the child.
+   * @return The row of the child.
+   */
+  public int getChild(int parent, int index) {
+    return children[childOffsets[parent + 1] + index];
+  }
+
+  /**
+   * @param parent A row or {@link #NO_PARENT} for the top level.
+   * @param child A row.
+   * @return The position of the child or -1 when it is not a child of the parent.
+   */
+  public int getIndexOfChild(int parent, int child) {
+    int from = childOffsets[parent + 1];
+    int index = Arrays.binarySearch(children, from, childOffsets[parent + 2], child);
+    return index < 0 ? -1 : index - from;
+  }
+
+  /**
+   * Replace a range of rows with the rows found after an edit and shift the rows below it.
+   *
+   * @param fromIndex The first row to replace.
+   * @param toIndex The row after the last one to replace.
+   * @param newRows The rows that replace the range, read from the document after the edit.
+   * @param offsetDelta How many characters the rows after the range move.
+   * @param lineDelta How many lines the rows after the range move.
+   */
+  public void replace(int fromIndex, int toIndex, TestRows newRows, int offsetDelta,
+      int lineDelta) {
+    for (int i = fromIndex; i < toIndex; i++) {
+      counts[countIndex(i)]--;
+    }
+
+    int removed = toIndex - fromIndex;
+    int added = newRows.size;
+    int tail = size - toIndex;
+    ensureCapacity(size - removed + added);
+
+    int newTo = fromIndex + added;
+    int oldSize = size;
+    moveRows(toIndex, newTo, tail);
+    size = size - removed + added;
+    if (size < oldSize) {
+      Arrays.fill(names, size, oldSize, null);
+    }
+
+    for (int i = newTo; i < size; i++) {
+      startOffsets[i] += offsetDelta;
+      endOffsets[i] += offsetDelta;
+      nameStarts[i] += offsetDelta;
+      nameEnds[i] += offsetDelta;
+      lineNumbers[i] += lineDelta;
+    }
+
+    for (int i = 0; i < added; i++) {
+      copyRow(newRows, i, fromIndex + i);
+      counts[countIndex(fromIndex + i)]++;
+    }
+
+    // The text before the edit is the same, the text after it was shifted.
+    source = newRows.source;
+    computeParents();
+  }
+
+  private void moveRows(int from, int to, int count) {
+    System.arraycopy(startOffsets, from, startOffsets, to, count);
+    System.arraycopy(endOffsets, from, endOffsets, to, count);
+    System.arraycopy(lineNumbers, from, lineNumbers, to, count);
+    System.arraycopy(indentations, from, indentations, to, count);
+    System.arraycopy(parents, from, parents, to, count);
+    System.arraycopy(nameStarts, from, nameStarts, to, count);
+    System.arraycopy(nameEnds, from, nameEnds, to, count);
+    System.arraycopy(describes, from, describes, to, count);
+    System.arraycopy(states, from, states, to, count);
+    System.arraycopy(pendingStates, from, pendingStates, to, count);
+    System.arraycopy(names, from, names, to, count);
+  }
+
+  private void copyRow(TestRows from, int fromIndex, int toIndex) {
+    startOffsets[toIndex] = from.startOffsets[fromIndex];
+    endOffsets[toIndex] = from.endOffsets[fromIndex];
+    lineNumbers[toIndex] = from.lineNumbers[fromIndex];
+    indentations[toIndex] = from.indentations[fromIndex];
+    parents[toIndex] = from.parents[fromIndex];
+    nameStarts[toIndex] = from.nameStarts[fromIndex];
+    nameEnds[toIndex] = from.nameEnds[fromIndex];
+    describes[toIndex] = from.describes[fromIndex];
+    states[toIndex] = from.states[fromIndex];
+    pendingStates[toIndex] = from.pendingStates[fromIndex];
+    names[toIndex] = from.names[fromIndex];
+  }
+
+  /**
+   * Add a copy of a row of another table, without its parent.
+   */
+  public void addRow(TestRows from, int index) {
+    ensureCapacity(size + 1);
+    copyRow(from, index, size);
+    parents[size] = NO_PARENT;
+    counts[countIndex(size)]++;
+    size++;
+  }
+
+  public int getStartOffset(int index) {
+    return startOffsets[index];
+  }
+
+  public int getEndOffset(int index) {
+    return endOffsets[index];
+  }
+
+  public int getLineNumber(int index) {
+    return lineNumbers[index];
+  }
+
+  public int getIndentation(int index) {
+    return indentations[index];
+  }
+
+  public int getParent(int index) {
+    return parents[index];
+  }
+
+  public boolean isDescribe(int index) {
+    return describes[index];
+  }
+
+  public String getTestText(int index) {
+    String name = names[index];
+    if (name == null) {
+      name = intern(source.subSequence(nameStarts[index], nameEnds[index]).toString());
+      names[index] = name;
+    }
+    return name;
+  }
+
+  public TestState getTestState(int index) {
+    return STATES[states[index]];
+  }
+
+  public void setTestState(int index, TestState testState) {
+    counts[countIndex(index)]--;
+    states[index] = (byte) testState.ordinal();
+    counts[countIndex(index)]++;
+  }
+
+  private int countIndex(int index) {
+    return describes[index] ? STATES.length + states[index] : states[index];
+  }
+
+  /**
+   * @return The number of suites or unit tests with a state.
+   */
+  public int getCount(TestState testState, boolean describe) {
+    return counts[describe ? STATES.length + testState.ordinal() : testState.ordinal()];
+  }
+
+  /**
+   * @return The number of suites and unit tests with a state.
+   */
+  public int getCount(TestState testState) {
+    return getCount(testState, false) + getCount(testState, true);
+  }
+
+  public TestState getPendingChangeState(int index) {
+    byte state = pendingStates[index];
+    return state == NO_PENDING_CHANGE ? null : STATES[state];
+  }
+
+  public void setPendingChangeState(int index, TestState pendingChangeState) {
+    pendingStates[index] =
+        pendingChangeState == null ? NO_PENDING_CHANGE : (byte) pendingChangeState.ordinal();
+  }
+
+  public void clearPendingChangeStates() {
+    Arrays.fill(pendingStates, 0, size, NO_PENDING_CHANGE);
+  }
+
+  /**
+   * Read the name from the string literal after the open parenthesis, when it is the whole first
+   * argument: describe('name', function () {.
+   *
+   * @return False when the first argument is not a string literal.
+   */
+  private boolean findStringName(int index, CharSequence text, int endOffset) {
+    int length = text.length();
+    int quote = skipWhiteSpace(text, endOffset, length);
+    int stringEnd = JasmineScanner.findStringEnd(text, quote);
+    if (stringEnd == -1) {
+      return false;
+    }
+    int next = skipWhiteSpace(text, stringEnd, length);
+    if (next == length || text.charAt(next) != ',' && text.charAt(next) != ')') {
+      return false;
+    }
+
+    int nameStart = quote + 1;
+    int nameEnd = stringEnd - 1;
+    names[index] = null;
+    for (int i = nameStart; i < nameEnd; i++) {
+      if (text.charAt(i) == '\\') {
+        names[index] = intern(unescape(text, nameStart, nameEnd));
+        return true;
+      }
+    }
+
+    if (nameStart == nameEnd) {
+      names[index] = "";
+    } else {
+      // Keep the range, the string is created when the name is needed.
+      nameStarts[index] = nameStart;
+      nameEnds[index] = nameEnd;
+    }
+    return true;
+  }
+
+  /**
+   * Tell if the name of a test depends on the text at an offset. The string and the comma after
+   * it can be on the lines below the parenthesis.
+   *
+   * @param text The text with the test.
+   * @param endOffset The offset right after the parenthesis of the test.
+   * @param offset The start of a line after the parenthesis.
+   * @return True when the name is read up to the offset or past it.
+   */
+  public static boolean isNameReadAt(CharSequence text, int endOffset, int offset) {
+    int quote = skipWhiteSpace(text, endOffset, offset);
+    if (quote == offset) {
+      return true;
+    }
+    int stringEnd = JasmineScanner.findStringEnd(text, quote);
+    return stringEnd != -1 && skipWhiteSpace(text, stringEnd, offset) == offset;
+  }
+
+  /**
+   * Replace the escape sequences of a string literal with the characters they stand for.
+   */
+  private static String unescape(CharSequence text, int start, int end) {
+    StringBuilder builder = new StringBuilder(end - start);
+    for (int i = start; i < end; i++) {
+      char c = text.charAt(i);
+      if (c != '\\' || i + 1 == end) {
+        builder.append(c);
+        continue;
+      }
+
+      c = text.charAt(++i);
+      switch (c) {
+        case 'n':
+          builder.append('\n');
+          break;
+        case 't':
+          builder.append('\t');
+          break;
+        case 'r':
+          builder.append('\r');
+          break;
+        case 'b':
+          builder.append('\b');
+          break;
+        case 'f':
+          builder.append('\f');
+          break;
+        case 'v':
+          builder.append('\u000B');
+          break;
+        case '0':
+          builder.append('\0');
+          break;
+        case 'x':
+        case 'u':
+          int digits = c == 'x' ? 2 : 4;
+          int value = parseHex(text, i + 1, Math.min(i + 1 + digits, end));
+          if (value == -1 || i + digits >= end) {
+            builder.append(c);
+          } else {
+            builder.append((char) value);
+            i += digits;
+          }
+          break;
+        default:
+          builder.append(c);
+      }
+    }
+    return builder.toString();
+  }
+
+  /**
+   * @return The value of the hexadecimal digits, or -1 when one of them is not a digit.
+   */
+  private static int parseHex(CharSequence text, int start, int end) {
+    int value = 0;
+    for (int i = start; i < end; i++) {
+      int digit = Character.digit(text.charAt(i), 16);
+      if (digit == -1) {
+        return -1;
+      }
+      value = value * 16 + digit;
+    }
+    return value;
+  }
+
+  /**
+   * Find the name of a test whose first argument is not a string literal. The name goes from the
+   * quote after "describe(" or "it(" to the last quote followed by a comma or a plus sign. The
+   * name is the whole line when there is no quoted name.
+   */
+  private void findTestText(int index, CharSequence text, int startOfLine, int endOfLine) {
+    // Remove the end of the line: (\S+)(["'])(\s*[,+]\s*.*$) -> $1
+    int end = endOfLine;
+    int runStart = startOfLine;
+    while (runStart < endOfLine) {
+      runStart = skipWhiteSpace(text, runStart, endOfLine);
+      int runEnd = skipNonWhiteSpace(text, runStart, endOfLine);
+
+      // The last quote in the run that is followed by a comma or a plus sign.
+      int closingQuote = -1;
+      for (int i = runEnd - 1; i > runStart; i--) {
+        if (isQuote(text.charAt(i))) {
+          int next = skipWhiteSpace(text, i + 1, endOfLine);
+          if (next < endOfLine && (text.charAt(next) == ',' || text.charAt(next) == '+')) {
+            closingQuote = i;
+            break;
+          }
+        }
+      }
+
+      if (closingQuote != -1) {
+        end = closingQuote;
+        break;
+      }
+      runStart = runEnd;
+    }
+
+    // Remove the start of the line, for every match of:
+    // \s*([xfd]?describe\s*\(|[xfi]?it\s*\()["'](\S+) -> $2
+    TextBuilder builder = new TextBuilder(text);
+    int copyFrom = startOfLine;
+    int position = startOfLine;
+    while (position < end) {
+      int keywordStart = skipWhiteSpace(text, position, end);
+      int nameStart = matchNameStart(text, keywordStart, end);
+
+      if (nameStart == -1) {
+        position = keywordStart + 1;
+      } else {
+        int nameEnd = skipNonWhiteSpace(text, nameStart, end);
+        builder.append(copyFrom, position);
+        builder.append(nameStart, nameEnd);
+        copyFrom = nameEnd;
+        position = nameEnd;
+      }
+    }
+    builder.append(copyFrom, end);
+
+    if (builder.builder != null) {
+      names[index] = intern(builder.builder.toString());
+    } else if (builder.start == -1) {
+      names[index] = "";
+    } else {
+      // Keep the range, the string is created when the name is needed.
+      nameStarts[index] = builder.start;
+      nameEnds[index] = builder.end;
+    }
+  }
+
+  /**
+   * Match [xfd]?describe\s*\(["'] or [xfi]?it\s*\(["'] followed by a non white space.
+   *
+   * @return The offset after the quote or -1 when there is no match.
+   */
+  private static int matchNameStart(CharSequence text, int offset, int end) {
+    int keywordEnd = keywordEnd(text, offset, end, DESCRIBE, "xfd");
+    if (keywordEnd == -1) {
+      keywordEnd = keywordEnd(text, offset, end, IT, "xfi");
+    }
+    if (keywordEnd == -1) {
+      return -1;
+    }
+
+    int parenthesis = skipWhiteSpace(text, keywordEnd, end);
+    int quote = parenthesis + 1;
+    if (quote + 1 < end && text.charAt(parenthesis) == '(' && isQuote(text.charAt(quote)) &&
+        !isWhiteSpace(text.charAt(quote + 1))) {
+      return quote + 1;
+    }
+    return -1;
+  }
+
+  /**
+   * Match a keyword with an optional prefix.
+   *
+   * @param prefixes The characters that can go before the keyword.
+   * @return The end of the keyword or -1 when it is not at the offset.
+   */
+  private static int keywordEnd(CharSequence text, int offset, int end, String keyword,
+      String prefixes) {
+    if (prefixedKeywordAt(text, offset, end, keyword, prefixes)) {
+      return offset + 1 + keyword.length();
+    }
+    if (regionMatches(text, offset, end, keyword)) {
+      return offset + keyword.length();
+    }
+    return -1;
+  }
+
+  /**
+   * Match a keyword that starts with one of the prefixes.
+   */
+  private static boolean prefixedKeywordAt(CharSequence text, int offset, int end, String keyword,
+      String prefixes) {
+    return offset < end && prefixes.indexOf(text.charAt(offset)) != -1 &&
+        regionMatches(text, offset + 1, end, keyword);
+  }
+
+  private static boolean regionMatches(CharSequence text, int offset, int end, String value) {
+    if (offset + value.length() > end) {
+      return false;
+    }
+    for (int i = 0; i < value.length(); i++) {
+      if (text.charAt(offset + i) != value.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int skipWhiteSpace(CharSequence text, int offset, int end) {
+    while (offset < end && isWhiteSpace(text.charAt(offset))) {
+      offset++;
+    }
+    return offset;
+  }
+
+  private static int skipNonWhiteSpace(CharSequence text, int offset, int end) {
+    while (offset < end && !isWhiteSpace(text.charAt(offset))) {
+      offset++;
+    }
+    return offset;
+  }
+
+  private static boolean isQuote(char c) {
+    return c == '"' || c == '\'';
+  }
+
+  /**
+   * Same as \s in a java regular expression.
+   */
+  private static boolean isWhiteSpace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == '\u000B';
+  }
+
+  /**
+   * Joins ranges of the text. Most names are a single range, they don't need to be copied.
+   */
+  private static class TextBuilder {
+    private final CharSequence text;
+    int start = -1;
+    int end = -1;
+    StringBuilder builder;
+
+    TextBuilder(CharSequence text) {
+      this.text = text;
+    }
+
+    void append(int from, int to) {
+      if (from >= to) {
+        return;
+      }
+      if (builder == null && start == -1) {
+        start = from;
+        end = to;
+      } else if (builder == null && from == end) {
+        end = to;
+      } else {
+        if (builder == null) {
+          builder = new StringBuilder().append(text, start, end);
+        }
+        builder.append(text, from, to);
+      }
+    }
+  }
+}
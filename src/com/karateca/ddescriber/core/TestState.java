@@ -1,4 +1,4 @@
-package com.karateca.ddescriber.model;
+package com.karateca.ddescriber.core;
 
 /**
  * @author Andres Dominguez.
@@ -1,15 +1,13 @@
 package com.karateca.ddescriber.dialog;
 
+import com.karateca.ddescriber.core.TestState;
 import com.karateca.ddescriber.model.TestFindResult;
-import com.karateca.ddescriber.model.TestState;
 import com.karateca.ddescriber.model.TreeNode;
 
 import javax.swing.*;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeCellRenderer;
 import java.awt.*;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * @author Andres Dominguez.
@@ -20,7 +18,9 @@ class CustomTreeCellRenderer extends DefaultTreeCellRenderer {
   private static final Color GREEN_FG_COLOR = new Color(57, 194, 70);
   private static final Color RED_BG_COLOR = new Color(232, 117, 107);
   private static final Color RED_FG_COLOR = new Color(194, 41, 39);
-  private final Map<TestState, NodeSettings> colorMap = new HashMap<TestState, NodeSettings>();
+  // The settings for every test state, by ordinal.
+  private final NodeSettings[] stateSettings = new NodeSettings[TestState.values().length];
+  private NodeSettings paintedSettings;
 
   private class NodeSettings {
     final Color bgColor;
@@ -34,8 +34,12 @@ class CustomTreeCellRenderer extends DefaultTreeCellRenderer {
     }
 
     public void paintNode() {
-      setBackgroundNonSelectionColor(bgColor);
-      setBackgroundSelectionColor(fgColor);
+      // The colors stay until other settings are painted.
+      if (paintedSettings != this) {
+        setBackgroundNonSelectionColor(bgColor);
+        setBackgroundSelectionColor(fgColor);
+        paintedSettings = this;
+      }
       setIcon(icon);
     }
   }
@@ -45,10 +49,10 @@ class CustomTreeCellRenderer extends DefaultTreeCellRenderer {
     Color defaultNonSelColor = getBackgroundNonSelectionColor();
     NodeSettings defaultColor = new NodeSettings(defaultNonSelColor, defaultBgSelColor, DialogIcons.itGrayIcon);
 
-    colorMap.put(TestState.Excluded, new NodeSettings(RED_BG_COLOR, RED_FG_COLOR, DialogIcons.itRedIcon));
-    colorMap.put(TestState.Included, new NodeSettings(GREEN_BG_COLOR, GREEN_FG_COLOR, DialogIcons.itGreenIcon));
-    colorMap.put(TestState.NotModified, defaultColor);
-    colorMap.put(TestState.RolledBack, defaultColor);
+    stateSettings[TestState.Excluded.ordinal()] = new NodeSettings(RED_BG_COLOR, RED_FG_COLOR, DialogIcons.itRedIcon);
+    stateSettings[TestState.Included.ordinal()] = new NodeSettings(GREEN_BG_COLOR, GREEN_FG_COLOR, DialogIcons.itGreenIcon);
+    stateSettings[TestState.NotModified.ordinal()] = defaultColor;
+    stateSettings[TestState.RolledBack.ordinal()] = defaultColor;
   }
 
   @Override
@@ -71,8 +75,7 @@ class CustomTreeCellRenderer extends DefaultTreeCellRenderer {
       setIcon(DialogIcons.descIcon);
     }
 
-    setText(findResult.toString());
-
+    // The text is the cached name of the test, set by the super class.
     return component;
   }
 
@@ -82,13 +85,13 @@ class CustomTreeCellRenderer extends DefaultTreeCellRenderer {
 
     if (pendingState == TestState.RolledBack &&
         (originalState == TestState.Included || originalState == TestState.Excluded)) {
-      return colorMap.get(TestState.NotModified);
+      return stateSettings[TestState.NotModified.ordinal()];
     }
 
     if (pendingState == TestState.Included || pendingState == TestState.Excluded) {
-      return colorMap.get(pendingState);
+      return stateSettings[pendingState.ordinal()];
     }
 
-    return colorMap.get(originalState);
+    return stateSettings[originalState.ordinal()];
   }
 }
@@ -6,21 +6,27 @@ import com.intellij.openapi.actionSystem.Shortcut;
 import com.intellij.openapi.actionSystem.ShortcutSet;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.ui.DocumentAdapter;
+import com.intellij.ui.SearchTextField;
 import com.intellij.ui.SpeedSearchComparator;
 import com.intellij.ui.TreeSpeedSearch;
 import com.intellij.ui.components.JBScrollPane;
 import com.intellij.ui.treeStructure.Tree;
+import com.intellij.util.containers.Convertor;
 import com.intellij.util.ui.tree.TreeUtil;
 import com.karateca.ddescriber.JasmineSyntax;
+import com.karateca.ddescriber.core.TestState;
 import com.karateca.ddescriber.model.JasmineFile;
 import com.karateca.ddescriber.model.TestFindResult;
-import com.karateca.ddescriber.model.TestState;
+import com.karateca.ddescriber.model.TestSearchIndex;
+import com.karateca.ddescriber.model.TestTreeModel;
 import com.karateca.ddescriber.model.TreeNode;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.awt.BorderLayout;
+import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.InputEvent;
@@ -29,7 +35,7 @@ import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.util.ArrayList;
-import java.util.Enumeration;
+import java.util.BitSet;
 import java.util.List;
 
 import javax.swing.Action;
@@ -46,8 +52,13 @@ public class DescriberDialog extends DialogWrapper {
   public static final int GO_TO_TEST_EXIT_CODE = 101;
 
   private static final int VISIBLE_ROW_COUNT = 17;
+  // Larger files only expand the path to the closest test.
+  private static final int EXPAND_ALL_LIMIT = 2000;
+  // Larger files use a fixed row height, so the tree doesn't measure every row.
+  private static final int LARGE_MODEL_LIMIT = 500;
   private final int caretOffset;
   private Tree tree;
+  private TestTreeModel treeModel;
   private TestFindResult selectedTest;
   private final JasmineFile jasmineFile;
   private final PendingChanges pendingChanges;
@@ -60,14 +71,11 @@ public class DescriberDialog extends DialogWrapper {
   private final ShortcutSet ALT_C =
       new CustomShortcutSet(KeyStroke.getKeyStroke(KeyEvent.VK_C, InputEvent.ALT_DOWN_MASK));
 
-  // TODO: Save this as a plugin setting.
-  public static JasmineSyntax jasmineSyntax = JasmineSyntax.Version2;
-
   public DescriberDialog(Project project, JasmineFile jasmineFile, int caretOffset) {
     super(project);
     this.jasmineFile = jasmineFile;
     this.caretOffset = caretOffset;
-    pendingChanges = new PendingChanges();
+    pendingChanges = new PendingChanges(jasmineFile.getAllTests());
     init();
     setTitle("Select the Test or Suite to Include / Exclude");
   }
@@ -78,23 +86,55 @@ public class DescriberDialog extends DialogWrapper {
     final TestFindResult closest = jasmineFile.getClosestTestFromCaret(caretOffset);
 
     // Build the tree.
-    TreeNode root = jasmineFile.getTreeNode();
-    tree = new Tree(root);
+    treeModel = jasmineFile.createTreeModel();
+    TreeNode root = treeModel.getRoot();
+    tree = new Tree(treeModel);
     tree.setVisibleRowCount(VISIBLE_ROW_COUNT);
-    tree.setCellRenderer(new CustomTreeCellRenderer());
+    CustomTreeCellRenderer renderer = new CustomTreeCellRenderer();
+    tree.setCellRenderer(renderer);
+    if (treeModel.getVisibleCount() > LARGE_MODEL_LIMIT) {
+      // Every row has the same font and icon size.
+      tree.setRowHeight(renderer.getTreeCellRendererComponent(
+          tree, root, false, true, false, 0, false).getPreferredSize().height);
+      tree.setLargeModel(true);
+    }
 
     // Check if there are multiple describes in the file.
     if (root.getUserObject() instanceof String) {
       tree.setRootVisible(false);
     }
 
-    TreeUtil.expandAll(tree);
+    if (treeModel.getVisibleCount() <= EXPAND_ALL_LIMIT) {
+      TreeUtil.expandAll(tree);
+    }
+
+    // Add search, make it case insensitive. The names are already in lower case.
+    new TreeSpeedSearch(tree, new Convertor<TreePath, String>() {
+      private TestSearchIndex searchIndex;
+
+      @Override
+      public String convert(TreePath path) {
+        Object userObject = ((DefaultMutableTreeNode) path.getLastPathComponent()).getUserObject();
+        if (!(userObject instanceof TestFindResult)) {
+          return userObject.toString().toLowerCase();
+        }
+        if (searchIndex == null) {
+          searchIndex = jasmineFile.getSearchIndex();
+        }
+        return searchIndex.getLowerCaseName(((TestFindResult) userObject).getIndex());
+      }
+    }) {
+      private String pattern;
+      private String lowerCasePattern;
 
-    // Add search, make it case insensitive.
-    new TreeSpeedSearch(tree) {
       @Override
       protected boolean compare(String text, String pattern) {
-        return super.compare(text.toLowerCase(), pattern.toLowerCase());
+        // Convert the pattern once, not for every row.
+        if (!pattern.equals(this.pattern)) {
+          this.pattern = pattern;
+          lowerCasePattern = pattern.toLowerCase();
+        }
+        return super.compare(text, lowerCasePattern);
       }
     }.setComparator(new SpeedSearchComparator(false));
 
@@ -123,30 +163,71 @@ public class DescriberDialog extends DialogWrapper {
     });
 
     JBScrollPane scrollPane = new JBScrollPane(tree);
-    selectClosestTest(root, closest);
+    selectClosestTest(closest);
 
     JPanel panel = new JPanel(new BorderLayout());
 
+    panel.add(BorderLayout.NORTH, createFilterField());
     panel.add(BorderLayout.CENTER, scrollPane);
     panel.add(BorderLayout.SOUTH, createPanelWithLabels());
 
     return panel;
   }
 
+  /**
+   * Create a text field that filters the tree as you type.
+   */
+  private SearchTextField createFilterField() {
+    final SearchTextField filterField = new SearchTextField(false);
+    filterField.addDocumentListener(new DocumentAdapter() {
+      @Override
+      protected void textChanged(javax.swing.event.DocumentEvent e) {
+        filterTree(filterField.getText());
+      }
+    });
+
+    // Move to the tree with the down arrow.
+    filterField.getTextEditor().addKeyListener(new KeyAdapter() {
+      @Override
+      public void keyPressed(KeyEvent keyEvent) {
+        if (keyEvent.getKeyCode() == KeyEvent.VK_DOWN) {
+          tree.requestFocusInWindow();
+        }
+      }
+    });
+
+    return filterField;
+  }
+
+  private void filterTree(String text) {
+    treeModel.setFilter(text);
+
+    if (treeModel.getVisibleCount() <= EXPAND_ALL_LIMIT) {
+      TreeUtil.expandAll(tree);
+    }
+    if (tree.getSelectionCount() == 0 && tree.getRowCount() > 0) {
+      tree.setSelectionRow(0);
+    }
+  }
+
   private JPanel createPanelWithLabels() {
     JPanel panel = new JPanel(new BorderLayout());
 
     String values = String.format("Tests: %s", jasmineFile.getTestCounts().getTestCount());
+    if (!jasmineFile.isComplete()) {
+      values += " (partial results)";
+    }
     panel.add(BorderLayout.EAST, new JLabel(values));
 
     // Jasmine 1 checkbox
     final JCheckBox checkBox = new JCheckBox("Use Jasmine 1 syntax (ddescribe, iit)",
-        jasmineSyntax == JasmineSyntax.Version1);
+        JasmineSyntax.getSelected() == JasmineSyntax.Version1);
     panel.add(BorderLayout.CENTER, checkBox);
     checkBox.addActionListener(new ActionListener() {
       @Override
       public void actionPerformed(ActionEvent e) {
-        jasmineSyntax = checkBox.isSelected() ? JasmineSyntax.Version1 : JasmineSyntax.Version2;
+        JasmineSyntax.setSelected(
+            checkBox.isSelected() ? JasmineSyntax.Version1 : JasmineSyntax.Version2);
       }
     });
 
@@ -160,19 +241,11 @@ public class DescriberDialog extends DialogWrapper {
     close(GO_TO_TEST_EXIT_CODE);
   }
 
-  private void selectClosestTest(DefaultMutableTreeNode root, final TestFindResult closest) {
-    Enumeration enumeration = root.breadthFirstEnumeration();
-
-    while (enumeration.hasMoreElements()) {
-      DefaultMutableTreeNode node = (DefaultMutableTreeNode) enumeration.nextElement();
-
-      if (node.getUserObject() == closest) {
-        TreePath treePath = new TreePath(node.getPath());
-        tree.setSelectionPath(treePath);
-        tree.scrollPathToVisible(treePath);
-
-        return;
-      }
+  private void selectClosestTest(TestFindResult closest) {
+    TreePath treePath = treeModel.getPath(closest);
+    if (treePath != null) {
+      tree.setSelectionPath(treePath);
+      tree.scrollPathToVisible(treePath);
     }
   }
 
@@ -249,6 +322,38 @@ public class DescriberDialog extends DialogWrapper {
     }
   }
 
+  /**
+   * Paint the rows whose state changed once, only the part of them that is visible.
+   */
+  private void repaintSelectedRows() {
+    int[] rows = tree.getSelectionRows();
+    if (rows == null || rows.length == 0) {
+      return;
+    }
+
+    Rectangle visible = tree.getVisibleRect();
+    int firstVisible = tree.getClosestRowForLocation(visible.x, visible.y);
+    int lastVisible = tree.getClosestRowForLocation(visible.x, visible.y + visible.height);
+    int first = Integer.MAX_VALUE;
+    int last = -1;
+    for (int row : rows) {
+      if (row >= firstVisible && row <= lastVisible) {
+        first = Math.min(first, row);
+        last = Math.max(last, row);
+      }
+    }
+    if (last == -1) {
+      return;
+    }
+
+    Rectangle firstBounds = tree.getRowBounds(first);
+    Rectangle lastBounds = tree.getRowBounds(last);
+    if (firstBounds != null && lastBounds != null) {
+      tree.repaint(0, firstBounds.y, tree.getWidth(),
+          lastBounds.y + lastBounds.height - firstBounds.y);
+    }
+  }
+
   class MyAction extends DialogWrapperAction {
     private final TestState changeState;
 
@@ -261,10 +366,12 @@ public class DescriberDialog extends DialogWrapper {
 
     @Override
     protected void doAction(ActionEvent e) {
+      BitSet selected = new BitSet();
       for (TestFindResult testFindResult : getSelectedValues()) {
-        pendingChanges.itemChanged(testFindResult, changeState);
+        selected.set(testFindResult.getIndex());
       }
-      tree.repaint();
+      pendingChanges.itemsChanged(selected, changeState);
+      repaintSelectedRows();
     }
   }
 }
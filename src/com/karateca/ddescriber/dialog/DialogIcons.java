@@ -7,7 +7,7 @@ import javax.swing.*;
 /**
  * @author Andres Dominguez.
  */
-class DialogIcons {
+public class DialogIcons {
   public static final Icon itGrayIcon = IconLoader.findIcon("/icons/it-gray-icon.png");
   public static final Icon itRedIcon = IconLoader.findIcon("/icons/it-red-icon.png");
   public static final Icon itGreenIcon = IconLoader.findIcon("/icons/it-icon.png");
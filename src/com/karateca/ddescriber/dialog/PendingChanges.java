@@ -1,84 +1,104 @@
 package com.karateca.ddescriber.dialog;
 
+import com.karateca.ddescriber.core.TestState;
 import com.karateca.ddescriber.model.TestFindResult;
-import com.karateca.ddescriber.model.TestState;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashSet;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Set;
 
 /**
+ * The tests that change when the dialog is closed. The tests are kept by their index in the file,
+ * the new state is kept by the test itself.
+ *
  * @author Andres Dominguez.
  */
 public class PendingChanges {
 
-  private final Set<TestFindResult> pendingChanges = new HashSet<TestFindResult>();
+  private final List<TestFindResult> tests;
+  private final BitSet pendingChanges = new BitSet();
 
+  /**
+   * @param tests All the tests in the file, in document order.
+   */
+  public PendingChanges(List<TestFindResult> tests) {
+    this.tests = tests;
+  }
+
+  /**
+   * @return The tests to change, in document order.
+   */
   public List<TestFindResult> getTestsToChange() {
-    List<TestFindResult> changeList = new ArrayList<TestFindResult>(pendingChanges);
+    List<TestFindResult> changeList = new ArrayList<TestFindResult>(pendingChanges.cardinality());
 
-    Collections.sort(changeList, new Comparator<TestFindResult>() {
-      @Override
-      public int compare(TestFindResult left, TestFindResult right) {
-        return left.getStartOffset() - right.getStartOffset();
-      }
-    });
+    for (int i = pendingChanges.nextSetBit(0); i >= 0; i = pendingChanges.nextSetBit(i + 1)) {
+      changeList.add(tests.get(i));
+    }
 
     return changeList;
   }
 
+  /**
+   * Change the state of many tests at once. The states are updated in one pass and the pending
+   * changes with two bulk operations. Nothing is notified for every test, the caller paints the
+   * changed rows once.
+   *
+   * @param indexes The indexes of the tests to change.
+   * @param newState The state to change to.
+   */
+  public void itemsChanged(BitSet indexes, TestState newState) {
+    BitSet removed = new BitSet();
+    for (int i = indexes.nextSetBit(0); i >= 0; i = indexes.nextSetBit(i + 1)) {
+      TestFindResult testFindResult = tests.get(i);
+      TestState pendingState = getNextPendingState(testFindResult, newState);
+      testFindResult.setPendingChangeState(pendingState);
+      if (pendingState == null) {
+        removed.set(i);
+      }
+    }
+
+    pendingChanges.or(indexes);
+    pendingChanges.andNot(removed);
+  }
+
   public void itemChanged(TestFindResult testFindResult, TestState newState) {
-    TestState originalState = testFindResult.getTestState();
-    TestState pendingState = testFindResult.getPendingChangeState();
+    TestState pendingState = getNextPendingState(testFindResult, newState);
+    testFindResult.setPendingChangeState(pendingState);
+    pendingChanges.set(testFindResult.getIndex(), pendingState != null);
+  }
 
-    if (pendingState == null) {
-      add(testFindResult, newState);
-      return;
-    }
+  /**
+   * @return The pending state of a test after changing it to a new state, or null when the test
+   * is back to its original state.
+   */
+  private TestState getNextPendingState(TestFindResult testFindResult, TestState newState) {
+    TestState originalState = testFindResult.getTestState();
+    TestState pendingState = pendingChanges.get(testFindResult.getIndex()) ?
+        testFindResult.getPendingChangeState() : null;
 
     // Not in pending changes.
-    if (!pendingChanges.contains(testFindResult)) {
-      add(testFindResult, newState);
-      return;
+    if (pendingState == null) {
+      return originalState == newState ? TestState.RolledBack : newState;
     }
 
     // Reverting to original not modified state.
     if (originalState == TestState.NotModified && pendingState == newState) {
-      remove(testFindResult);
-      return;
+      return null;
     }
 
     // Included or excluded twice.
     if (originalState == newState) {
       if (pendingState == TestState.RolledBack || originalState != pendingState) {
-        remove(testFindResult);
+        return null;
       }
-      return;
+      return pendingState;
     }
 
     if (originalState != pendingState && pendingState == newState) {
       // Included or excluded twice. The first state flip went from included to excluded or vice versa.
-      testFindResult.setPendingChangeState(TestState.RolledBack);
-    } else {
-      // Just flipping state.
-      testFindResult.setPendingChangeState(newState);
-    }
-  }
-
-  private void remove(TestFindResult testFindResult) {
-    testFindResult.setPendingChangeState(null);
-    pendingChanges.remove(testFindResult);
-  }
-
-  private void add(TestFindResult testFindResult, TestState newState) {
-    pendingChanges.add(testFindResult);
-    if (testFindResult.getTestState() == newState) {
-      testFindResult.setPendingChangeState(TestState.RolledBack);
-    } else {
-      testFindResult.setPendingChangeState(newState);
+      return TestState.RolledBack;
     }
+    // Just flipping state.
+    return newState;
   }
 }
@@ -0,0 +1,168 @@
+package com.karateca.ddescriber.gutter;
+
+import com.intellij.codeHighlighting.Pass;
+import com.intellij.codeInsight.daemon.GutterIconNavigationHandler;
+import com.intellij.codeInsight.daemon.LineMarkerInfo;
+import com.intellij.codeInsight.daemon.LineMarkerProvider;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.markup.GutterIconRenderer;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.util.Function;
+import com.karateca.ddescriber.ActionUtil;
+import com.karateca.ddescriber.JasmineSyntax;
+import com.karateca.ddescriber.core.TestState;
+import com.karateca.ddescriber.dialog.DialogIcons;
+import com.karateca.ddescriber.model.JasmineFile;
+import com.karateca.ddescriber.model.JasmineFileCache;
+import com.karateca.ddescriber.model.TestFindResult;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.Icon;
+import java.awt.event.MouseEvent;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Shows the state of every describe() and it() in the gutter. Clicking the icon focuses the
+ * test, excludes it, and then restores it.
+ * <p/>
+ * The tests come from the cached file when it is up to date with the document. Otherwise they are
+ * found for the pass only: the cache keeps the files opened in the dialog, not every file that is
+ * highlighted.
+ */
+public class TestStateLineMarkerProvider implements LineMarkerProvider {
+  // Longest keyword: fdescribe, ddescribe and xdescribe.
+  private static final int MAX_KEYWORD_LENGTH = 9;
+
+  @Override
+  public LineMarkerInfo getLineMarkerInfo(@NotNull PsiElement element) {
+    // The markers are added for all the elements at once.
+    return null;
+  }
+
+  @Override
+  public void collectSlowLineMarkers(@NotNull List<PsiElement> elements,
+      @NotNull Collection<LineMarkerInfo> result) {
+    if (elements.isEmpty()) {
+      return;
+    }
+
+    PsiFile psiFile = elements.get(0).getContainingFile();
+    VirtualFile virtualFile = psiFile == null ? null : psiFile.getVirtualFile();
+    if (virtualFile == null) {
+      return;
+    }
+    JasmineFile jasmineFile = findTests(psiFile.getProject(), virtualFile);
+
+    for (PsiElement element : elements) {
+      // Only the keyword token, not the expressions that start with it.
+      if (element.getFirstChild() != null || element.getTextLength() > MAX_KEYWORD_LENGTH) {
+        continue;
+      }
+
+      TestFindResult test = jasmineFile.getTestAt(element.getTextRange().getStartOffset());
+      if (test != null) {
+        result.add(createMarker(element, test.getTestState()));
+      }
+    }
+  }
+
+  /**
+   * Get the tests from the cache, or find them without building the tree or adding the file to
+   * the cache. Must be called from a read action.
+   */
+  static JasmineFile findTests(Project project, VirtualFile virtualFile) {
+    JasmineFile jasmineFile = JasmineFileCache.getInstance(project).getIfUpToDate(virtualFile);
+    if (jasmineFile == null) {
+      jasmineFile = new JasmineFile(project, virtualFile);
+      jasmineFile.buildHierarchySync(new Runnable() {
+        @Override
+        public void run() {
+          ProgressManager.checkCanceled();
+        }
+      });
+    }
+    return jasmineFile;
+  }
+
+  private static LineMarkerInfo<PsiElement> createMarker(PsiElement element,
+      final TestState testState) {
+    return new LineMarkerInfo<PsiElement>(element, element.getTextRange(), getIcon(testState),
+        Pass.UPDATE_ALL, new Function<PsiElement, String>() {
+      @Override
+      public String fun(PsiElement element) {
+        return getTooltip(testState);
+      }
+    }, new GutterIconNavigationHandler<PsiElement>() {
+      @Override
+      public void navigate(MouseEvent event, PsiElement element) {
+        toggleTest(element.getProject(), element.getContainingFile().getVirtualFile(),
+            element.getTextRange().getStartOffset(), JasmineSyntax.getSelected());
+      }
+    }, GutterIconRenderer.Alignment.LEFT);
+  }
+
+  private static Icon getIcon(TestState testState) {
+    switch (testState) {
+      case Included:
+        return DialogIcons.itGreenIcon;
+      case Excluded:
+        return DialogIcons.itRedIcon;
+      default:
+        return DialogIcons.itGrayIcon;
+    }
+  }
+
+  private static String getTooltip(TestState testState) {
+    switch (testState) {
+      case Included:
+        return "Included. Click to exclude";
+      case Excluded:
+        return "Excluded. Click to restore";
+      default:
+        return "Click to include";
+    }
+  }
+
+  /**
+   * @return The state a click changes a test to.
+   */
+  static TestState getNextState(TestState testState) {
+    switch (testState) {
+      case Included:
+        return TestState.Excluded;
+      case Excluded:
+        return TestState.NotModified;
+      default:
+        return TestState.Included;
+    }
+  }
+
+  /**
+   * Change the state of the test that starts at an offset.
+   *
+   * @param jasmineSyntax Whether to include with ddescribe or fdescribe.
+   */
+  static void toggleTest(Project project, VirtualFile virtualFile, int startOffset,
+      JasmineSyntax jasmineSyntax) {
+    if (virtualFile == null || !virtualFile.isValid()) {
+      return;
+    }
+
+    JasmineFile jasmineFile = findTests(project, virtualFile);
+    TestFindResult test = jasmineFile.getTestAt(startOffset);
+    Document document = ActionUtil.getDocument(virtualFile);
+    if (test == null || document == null) {
+      return;
+    }
+
+    test.setPendingChangeState(getNextState(test.getTestState()));
+    ActionUtil.changeTestList(project, document, Collections.singletonList(test), jasmineSyntax);
+    test.setPendingChangeState(null);
+  }
+}
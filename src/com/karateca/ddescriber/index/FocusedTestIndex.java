@@ -0,0 +1,228 @@
+package com.karateca.ddescriber.index;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.indexing.DataIndexer;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileBasedIndexExtension;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.KeyDescriptor;
+import com.karateca.ddescriber.core.JasmineScanner;
+import com.karateca.ddescriber.core.SpecFiles;
+import com.karateca.ddescriber.core.TestState;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Indexes the included (fdescribe, ddescribe, fit, iit) and excluded (xdescribe, xit) suites and
+ * unit tests of the JavaScript and TypeScript files in the project.
+ * <p/>
+ * The key is the test state and the value is the offset of every describe or it with that state.
+ */
+public class FocusedTestIndex extends FileBasedIndexExtension<TestState, int[]> {
+  public static final ID<TestState, int[]> NAME = ID.create("com.karateca.ddescriber.FocusedTestIndex");
+
+  @NotNull
+  @Override
+  public ID<TestState, int[]> getName() {
+    return NAME;
+  }
+
+  @NotNull
+  @Override
+  public DataIndexer<TestState, int[], FileContent> getIndexer() {
+    return new DataIndexer<TestState, int[], FileContent>() {
+      @NotNull
+      @Override
+      public Map<TestState, int[]> map(@NotNull FileContent inputData) {
+        return indexText(inputData.getContentAsText());
+      }
+    };
+  }
+
+  /**
+   * Find the offsets of the included and excluded tests.
+   *
+   * @param text The contents of the file.
+   * @return The offsets by test state. Tests that are not modified are left out.
+   */
+  static Map<TestState, int[]> indexText(CharSequence text) {
+    final Map<TestState, OffsetList> offsets = new EnumMap<TestState, OffsetList>(TestState.class);
+
+    new JasmineScanner(text).scan(new JasmineScanner.MatchListener() {
+      @Override
+      public void matchFound(JasmineScanner.Match match) {
+        if (match.getTestState() == TestState.NotModified) {
+          return;
+        }
+
+        OffsetList list = offsets.get(match.getTestState());
+        if (list == null) {
+          list = new OffsetList();
+          offsets.put(match.getTestState(), list);
+        }
+        list.add(match.getKeywordOffset());
+      }
+    });
+
+    if (offsets.isEmpty()) {
+      return Collections.emptyMap();
+    }
+
+    Map<TestState, int[]> result = new HashMap<TestState, int[]>();
+    for (Map.Entry<TestState, OffsetList> entry : offsets.entrySet()) {
+      result.put(entry.getKey(), entry.getValue().toArray());
+    }
+    return result;
+  }
+
+  @NotNull
+  @Override
+  public KeyDescriptor<TestState> getKeyDescriptor() {
+    return new KeyDescriptor<TestState>() {
+      @Override
+      public int getHashCode(TestState value) {
+        return value.ordinal();
+      }
+
+      @Override
+      public boolean isEqual(TestState left, TestState right) {
+        return left == right;
+      }
+
+      @Override
+      public void save(@NotNull DataOutput out, TestState value) throws IOException {
+        out.writeByte(value.ordinal());
+      }
+
+      @Override
+      public TestState read(@NotNull DataInput in) throws IOException {
+        return TestState.values()[in.readByte()];
+      }
+    };
+  }
+
+  @NotNull
+  @Override
+  public DataExternalizer<int[]> getValueExternalizer() {
+    return new DataExternalizer<int[]>() {
+      @Override
+      public void save(@NotNull DataOutput out, int[] offsets) throws IOException {
+        DataInputOutputUtil.writeINT(out, offsets.length);
+
+        // The offsets are sorted, save the distance to the previous one.
+        int previous = 0;
+        for (int offset : offsets) {
+          DataInputOutputUtil.writeINT(out, offset - previous);
+          previous = offset;
+        }
+      }
+
+      @Override
+      public int[] read(@NotNull DataInput in) throws IOException {
+        int[] offsets = new int[DataInputOutputUtil.readINT(in)];
+        int previous = 0;
+        for (int i = 0; i < offsets.length; i++) {
+          previous += DataInputOutputUtil.readINT(in);
+          offsets[i] = previous;
+        }
+        return offsets;
+      }
+    };
+  }
+
+  @NotNull
+  @Override
+  public FileBasedIndex.InputFilter getInputFilter() {
+    return new FileBasedIndex.InputFilter() {
+      @Override
+      public boolean acceptInput(@NotNull VirtualFile file) {
+        return isJavaScriptFile(file);
+      }
+    };
+  }
+
+  @Override
+  public boolean dependsOnFileContent() {
+    return true;
+  }
+
+  @Override
+  public int getVersion() {
+    // 2: the tests in comments, strings and template literals are skipped.
+    return 2;
+  }
+
+  public static boolean isJavaScriptFile(VirtualFile file) {
+    return SpecFiles.isSpecExtension(file.getExtension());
+  }
+
+  /**
+   * Find the files that have tests with a state.
+   *
+   * @param testState Included or Excluded.
+   * @param scope Where to look for the files.
+   * @return The files with at least one test in that state.
+   */
+  public static Collection<VirtualFile> getFilesWithTests(TestState testState,
+      GlobalSearchScope scope) {
+    return FileBasedIndex.getInstance().getContainingFiles(NAME, testState, scope);
+  }
+
+  /**
+   * Find the files that have an fdescribe, ddescribe, fit or iit.
+   */
+  public static Collection<VirtualFile> getFilesWithFocusedTests(Project project) {
+    return getFilesWithTests(TestState.Included, GlobalSearchScope.projectScope(project));
+  }
+
+  /**
+   * Get the offsets of the tests with a state in a file.
+   *
+   * @param project The current project.
+   * @param virtualFile The file with the tests.
+   * @param testState Included or Excluded.
+   * @return The offsets in the file, sorted.
+   */
+  public static int[] getTestOffsets(Project project, VirtualFile virtualFile, TestState testState) {
+    List<int[]> values = FileBasedIndex.getInstance().getValues(NAME, testState,
+        GlobalSearchScope.fileScope(project, virtualFile));
+    return values.isEmpty() ? new int[0] : values.get(0);
+  }
+
+  /**
+   * A growable list of ints.
+   */
+  private static class OffsetList {
+    private int[] values = new int[8];
+    private int size;
+
+    void add(int value) {
+      if (size == values.length) {
+        int[] newValues = new int[size * 2];
+        System.arraycopy(values, 0, newValues, 0, size);
+        values = newValues;
+      }
+      values[size++] = value;
+    }
+
+    int[] toArray() {
+      int[] result = new int[size];
+      System.arraycopy(values, 0, result, 0, size);
+      return result;
+    }
+  }
+}
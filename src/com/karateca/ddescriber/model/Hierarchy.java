@@ -2,6 +2,7 @@ package com.karateca.ddescriber.model;
 
 import com.intellij.find.FindResult;
 import com.intellij.openapi.editor.Document;
+import com.karateca.ddescriber.core.TestState;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -11,19 +12,19 @@ import java.util.List;
  */
 class Hierarchy {
   private final Document document;
-  private final TestFindResult closest;
+  private final int caretOffset;
+  private final TestTable table;
   private final List<TestFindResult> testFindResults;
 
   public Hierarchy(Document document, List<FindResult> findResults, int caretOffset) {
     this.document = document;
-    testFindResults = new ArrayList<TestFindResult>();
+    table = new TestTable(document.getImmutableCharSequence(), findResults.size());
     for (FindResult findResult : findResults) {
-      TestFindResult result = new TestFindResult(document, findResult);
-      testFindResults.add(result);
+      table.add(document, findResult.getEndOffset());
     }
-
-    // TODO: no longer necessary
-    this.closest = getClosestTestFromCaret(caretOffset);
+    table.computeParents();
+    testFindResults = table.asList();
+    this.caretOffset = caretOffset;
   }
 
   public Hierarchy(Document document, List<FindResult> findResults) {
@@ -31,40 +32,65 @@ class Hierarchy {
   }
 
   /**
-   * Get the closest unit test or suite from the current caret position.
+   * Get the closest unit test or suite from the current caret position. The first one wins when
+   * two tests are at the same distance.
    *
    * @param caretOffset The current caret position in the editor.
    * @return The closest test or suite.
    */
   public TestFindResult getClosestTestFromCaret(int caretOffset) {
+    if (table.size() == 0) {
+      return null;
+    }
+
     int lineNumber = document.getLineNumber(caretOffset) + 1;
-    TestFindResult closest = null;
-    int minDistance = Integer.MAX_VALUE;
-
-    // Get the closest unit test or suite from the current caret.
-    for (TestFindResult testFindResult : testFindResults) {
-      int distance = Math.abs(lineNumber - testFindResult.getLineNumber());
-      if (distance < minDistance) {
-        closest = testFindResult;
-        minDistance = distance;
-      } else {
-        return closest;
-      }
+    int after = indexOfFirstLineAtOrAfter(lineNumber);
+    if (after == 0) {
+      return table.get(0);
+    }
+
+    int before = after - 1;
+    if (after < table.size() &&
+        table.getLineNumber(after) - lineNumber < lineNumber - table.getLineNumber(before)) {
+      return table.get(after);
     }
 
-    return closest;
+    // Tests that start in the same line are at the same distance.
+    return table.get(indexOfFirstLineAtOrAfter(table.getLineNumber(before)));
   }
 
+  /**
+   * @return The closest test or suite to the caret offset given in the constructor.
+   */
   public TestFindResult getClosest() {
-    return closest;
+    return getClosestTestFromCaret(caretOffset);
+  }
+
+  /**
+   * @return The index of the first test in the line or below it.
+   */
+  private int indexOfFirstLineAtOrAfter(int lineNumber) {
+    int low = 0;
+    int high = table.size();
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (table.getLineNumber(middle) >= lineNumber) {
+        high = middle;
+      } else {
+        low = middle + 1;
+      }
+    }
+    return low;
   }
 
   public List<TestFindResult> getMarkedElements() {
-    List<TestFindResult> results = new ArrayList<TestFindResult>();
+    int markedCount = table.size() - table.getCount(TestState.NotModified);
+    List<TestFindResult> results = new ArrayList<TestFindResult>(markedCount);
 
-    for (TestFindResult element : testFindResults) {
-      if (element.getTestState() != TestState.NotModified) {
-        results.add(element);
+    // Stop once all the marked tests were found.
+    for (int i = 0; i < table.size() && results.size() < markedCount; i++) {
+      if (table.getTestState(i) != TestState.NotModified) {
+        results.add(table.get(i));
       }
     }
 
@@ -74,4 +100,81 @@ class Hierarchy {
   public List<TestFindResult> getAllUnitTests() {
     return testFindResults;
   }
+
+  TestTable getTable() {
+    return table;
+  }
+
+  TestCounts getTestCounts() {
+    int testCount = 0;
+    for (TestState testState : TestState.values()) {
+      testCount += table.getCount(testState, false);
+    }
+
+    return new TestCounts(testCount, table.getCount(TestState.Included),
+        table.getCount(TestState.Excluded));
+  }
+
+  /**
+   * @return True when some tests are included or excluded.
+   */
+  boolean hasMarkedElements() {
+    return table.size() > table.getCount(TestState.NotModified);
+  }
+
+  /**
+   * @return The index of the first test that ends after the offset.
+   */
+  int indexOfFirstEndingAfter(int offset) {
+    int low = 0;
+    int high = table.size();
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (table.getEndOffset(middle) > offset) {
+        high = middle;
+      } else {
+        low = middle + 1;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @return The index of the first test that starts after the offset.
+   */
+  int indexOfFirstStartingAfter(int offset) {
+    int low = 0;
+    int high = table.size();
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (table.getStartOffset(middle) > offset) {
+        high = middle;
+      } else {
+        low = middle + 1;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @param offset An offset of the document.
+   * @return The test whose describe or it starts at the offset, or null when there is none.
+   */
+  TestFindResult getTestStartingAt(int offset) {
+    int index = indexOfFirstStartingAfter(offset - 1);
+    return index < table.size() && table.getStartOffset(index) == offset ? table.get(index) : null;
+  }
+
+  /**
+   * Replace a range of tests with the ones found after an edit and shift the tests below it.
+   *
+   * @param fromIndex The first test to replace.
+   * @param toIndex The test after the last one to replace.
+   * @param newRows The tests that replace the range.
+   * @param offsetDelta How many characters the tests after the range move.
+   * @param lineDelta How many lines the tests after the range move.
+   */
+  void replace(int fromIndex, int toIndex, TestTable newRows, int offsetDelta, int lineDelta) {
+    table.replace(fromIndex, toIndex, newRows, offsetDelta, lineDelta);
+  }
 }
@@ -1,119 +1,248 @@
 package com.karateca.ddescriber.model;
 
 import com.intellij.find.FindResult;
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.event.DocumentAdapter;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.editor.event.DocumentListener;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.progress.impl.BackgroundableProcessIndicator;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.EventDispatcher;
 import com.karateca.ddescriber.ActionUtil;
 import com.karateca.ddescriber.JasmineFinder;
-import com.karateca.ddescriber.JasmineSyntax;
+import com.karateca.ddescriber.core.JasmineScanner;
+import com.karateca.ddescriber.core.TestRows;
 
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
-import java.util.Enumeration;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Stack;
 
 /**
  * @author Andres Dominguez.
  */
 public class JasmineFile {
+  /**
+   * How long (in milliseconds) a background build can take before returning partial results.
+   */
+  public static final long DEFAULT_TIME_BUDGET =
+      Long.getLong("ddescriber.parse.time.budget", 5000);
+
   private final Project project;
   private final VirtualFile virtualFile;
+  // Built when it is asked for, the dialog uses a tree model instead.
   private TreeNode treeNode;
+  // The last published snapshot, updated with every edit once it was asked for.
+  private volatile TestTreeSnapshot snapshot;
+  // Built on the first search.
+  private TestSearchIndex searchIndex;
 
   private final EventDispatcher<ChangeListener> myEventDispatcher = EventDispatcher.create(ChangeListener.class);
   private Hierarchy hierarchy;
+  // The start and end offsets of the comments, strings and template literals that span lines.
+  private int[] multiLineRegions = new int[0];
+  private boolean complete = true;
+  // The document modification stamp the tests were found for.
+  private volatile long modificationStamp = -1;
+  private long timeBudget = DEFAULT_TIME_BUDGET;
+
+  private BuildTask buildTask;
+  private ProgressIndicator buildIndicator;
+  private Document buildDocument;
+
+  // Start the build again when the document changes while it is running.
+  private final DocumentListener restartListener = new DocumentAdapter() {
+    @Override
+    public void documentChanged(DocumentEvent event) {
+      if (isBuilding()) {
+        buildTreeNodeAsync();
+      }
+    }
+  };
 
   public JasmineFile(Project project, VirtualFile virtualFile) {
     this.project = project;
     this.virtualFile = virtualFile;
   }
 
+  /**
+   * Find the tests in a background task. The listeners are notified on the UI thread once the
+   * build is done. A build that is already running is cancelled first.
+   */
   public void buildTreeNodeAsync() {
-    ActionUtil.runReadAction(new Runnable() {
-      @Override
-      public void run() {
-        treeNode = createRootNode();
-        myEventDispatcher.getMulticaster().stateChanged(new ChangeEvent("LinesFound"));
-      }
-    });
+    cancelBuild();
+
+    buildDocument = ActionUtil.getDocument(virtualFile);
+    buildDocument.addDocumentListener(restartListener);
+
+    buildTask = new BuildTask(buildDocument);
+    buildIndicator = new BackgroundableProcessIndicator(buildTask);
+    ProgressManager.getInstance().runProcessWithProgressAsynchronously(buildTask, buildIndicator);
   }
 
-  public void copyTree(TreeNode source, TreeNode destination) {
-    // Replace contents of node.
-    destination.removeAllChildren();
-    destination.setUserObject(source.getUserObject());
-    destination.setVirtualFile(source.getVirtualFile());
+  public boolean isBuilding() {
+    return buildTask != null;
+  }
 
-    doDeepCopy(source, destination);
+  /**
+   * Cancel the background build. The listeners are not notified.
+   */
+  public void cancelBuild() {
+    if (buildIndicator != null) {
+      buildIndicator.cancel();
+    }
+    stopBuild();
+  }
+
+  private void stopBuild() {
+    if (buildDocument != null) {
+      buildDocument.removeDocumentListener(restartListener);
+    }
+    buildTask = null;
+    buildIndicator = null;
+    buildDocument = null;
+  }
+
+  /**
+   * @param timeBudget How long (in milliseconds) a background build can take before it returns
+   * the tests found so far.
+   */
+  public void setTimeBudget(long timeBudget) {
+    this.timeBudget = timeBudget;
   }
 
-  private void doDeepCopy(TreeNode source, TreeNode destination) {
-    Enumeration sourceChildren = source.children();
-    while (sourceChildren.hasMoreElements()) {
-      TreeNode sourceChildNode = (TreeNode) sourceChildren.nextElement();
+  /**
+   * @return False when the last build ran out of time and only has part of the tests.
+   */
+  public boolean isComplete() {
+    return complete;
+  }
 
-      TreeNode destinationNode = new TreeNode(sourceChildNode.getUserObject());
-      destinationNode.setVirtualFile(sourceChildNode.getVirtualFile());
+  /**
+   * Finds the tests under a non-blocking read action.
+   */
+  private class BuildTask extends Task.Backgroundable {
+    private final Document document;
+    private Hierarchy newHierarchy;
+    private int[] newMultiLineRegions;
+    private boolean newComplete;
+    private long newModificationStamp;
+
+    BuildTask(Document document) {
+      super(project, "Finding jasmine tests", true);
+      this.document = document;
+    }
 
-      destination.add(destinationNode);
+    @Override
+    public void run(ProgressIndicator indicator) {
+      final long deadline = System.currentTimeMillis() + timeBudget;
+
+      ActionUtil.runNonBlockingReadAction(new Runnable() {
+        @Override
+        public void run() {
+          JasmineFinder jasmineFinder = new JasmineFinder(project, document);
+          jasmineFinder.findAll(new Runnable() {
+            @Override
+            public void run() {
+              ProgressManager.checkCanceled();
+            }
+          }, deadline);
+
+          newHierarchy = new Hierarchy(document, jasmineFinder.getFindResults());
+          newMultiLineRegions = jasmineFinder.getMultiLineRegions();
+          newComplete = jasmineFinder.isComplete();
+          newModificationStamp = document.getModificationStamp();
+        }
+      }, indicator);
+    }
 
-      if (sourceChildNode.getChildCount() > 0) {
-        doDeepCopy(sourceChildNode, destinationNode);
+    @Override
+    public void onSuccess() {
+      // Ignore the results of a build that was restarted.
+      if (buildTask != this) {
+        return;
       }
+      stopBuild();
+
+      hierarchy = newHierarchy;
+      multiLineRegions = newMultiLineRegions;
+      treeNode = null;
+      snapshot = null;
+      searchIndex = null;
+      complete = newComplete;
+      modificationStamp = newModificationStamp;
+      myEventDispatcher.getMulticaster().stateChanged(new ChangeEvent("LinesFound"));
     }
   }
 
   public TreeNode buildTreeNodeSync() {
-    treeNode = createRootNode();
-    return treeNode;
+    buildHierarchySync();
+    return getTreeNode();
   }
 
-  private TreeNode createRootNode() {
-    Document document = ActionUtil.getDocument(virtualFile);
+  /**
+   * Find the tests without building the tree. Used when only the tests are needed, like when
+   * cleaning many files.
+   */
+  public void buildHierarchySync() {
+    buildHierarchySync((Runnable) null);
+  }
+
+  /**
+   * Find the tests without building the tree, for the background tasks.
+   *
+   * @param cancellationCheck Called periodically while the file is scanned, it can throw to
+   * cancel the search.
+   */
+  public void buildHierarchySync(Runnable cancellationCheck) {
+    buildHierarchySync(ActionUtil.getDocument(virtualFile), cancellationCheck);
+  }
+
+  private void buildHierarchySync(Document document, Runnable cancellationCheck) {
+    createHierarchy(document, cancellationCheck);
+    treeNode = null;
+    snapshot = null;
+    searchIndex = null;
+    complete = true;
+  }
+
+  void createHierarchy(Document document, Runnable cancellationCheck) {
+    modificationStamp = document.getModificationStamp();
 
     JasmineFinder jasmineFinder = new JasmineFinder(project, document);
-    jasmineFinder.findAll();
+    jasmineFinder.findAll(cancellationCheck, Long.MAX_VALUE);
     List<FindResult> findResults = jasmineFinder.getFindResults();
 
     hierarchy = new Hierarchy(document, findResults);
-
-    return populateTree(hierarchy.getAllUnitTests());
+    multiLineRegions = jasmineFinder.getMultiLineRegions();
   }
 
-  private TreeNode populateTree(List<TestFindResult> elements) {
-    // TODO: what happens when the list is empty?
+  /**
+   * Build the tree for the tests.
+   *
+   * @param table The tests in document order, with their parents.
+   * @return The root node.
+   */
+  TreeNode populateTree(TestTable table) {
+    List<TreeNode> nodes = new ArrayList<TreeNode>(table.size());
 
     // Use a dummy root when you have multiple describes at the top.
     TreeNode root = new TreeNode(virtualFile.getName(), virtualFile);
     root.setTopNode(true);
-    TreeNode parent = root;
-    TreeNode last = root;
-
-    Stack<TreeNode> stack = new Stack<TreeNode>();
-    int currentIndentation = -1;
 
-    for (TestFindResult element : elements) {
-      int ind = element.getIndentation();
+    // The parents come before their children.
+    for (int i = 0; i < table.size(); i++) {
+      TreeNode newNode = new TreeNode(table.get(i), virtualFile);
+      nodes.add(newNode);
 
-      TreeNode newNode = new TreeNode(element, virtualFile);
-
-      if (ind > currentIndentation) {
-        stack.push(parent);
-        parent = last;
-      } else if (ind < currentIndentation) {
-        do {
-          // Find a parent that is not under the current level.
-          parent = stack.pop();
-        } while (!(parent.getUserObject() instanceof String) && parent.getNodeValue().getIndentation() >= ind);
-      }
-      last = newNode;
-      parent.add(last);
-
-      currentIndentation = ind;
+      int parent = table.getParent(i);
+      (parent == TestTable.NO_PARENT ? root : nodes.get(parent)).add(newNode);
     }
 
     // If there is only one describe in this file then make it the top node.
@@ -128,6 +257,299 @@ public class JasmineFile {
     return root;
   }
 
+  /**
+   * Keep the tests up to date while the document changes. Only the lines touched by every edit
+   * are scanned again, and the tests below them are shifted. When an edit starts or ends a
+   * comment, string or template literal that spans lines, the scan goes on until the lines are
+   * read the same way as before the edit.
+   *
+   * @param parentDisposable Stops the updates when disposed.
+   */
+  public void enableIncrementalUpdates(Disposable parentDisposable) {
+    ActionUtil.getDocument(virtualFile).addDocumentListener(new IncrementalUpdater(), parentDisposable);
+  }
+
+  /**
+   * Scans the lines touched by a document change and patches the hierarchy. The changes made in
+   * a bulk update are patched once, when the bulk update finishes.
+   */
+  private class IncrementalUpdater extends DocumentAdapter {
+    private boolean active;
+    private int regionStartLine;
+    private int oldEndLine;
+    private int fromIndex;
+    private int toIndex;
+
+    // The changes of a bulk update: the range that covers them, after the changes.
+    private boolean inBulkUpdate;
+    private boolean bulkChanged;
+    private int bulkStart;
+    private int bulkEnd;
+    private int bulkOldLength;
+    private int bulkOldLastLine;
+
+    @Override
+    public void bulkUpdateStarting(Document document) {
+      inBulkUpdate = true;
+      bulkChanged = false;
+      bulkOldLength = document.getTextLength();
+      bulkOldLastLine = document.getLineNumber(bulkOldLength);
+    }
+
+    @Override
+    public void bulkUpdateFinished(Document document) {
+      inBulkUpdate = false;
+      // A full build will pick up the changes.
+      if (!bulkChanged || hierarchy == null || isBuilding()) {
+        return;
+      }
+
+      int offsetDelta = document.getTextLength() - bulkOldLength;
+      int lineDelta = document.getLineNumber(document.getTextLength()) - bulkOldLastLine;
+      // The text after the range was only shifted.
+      int newEndLine = document.getLineNumber(bulkEnd);
+      findRegion(document, document.getLineNumber(bulkStart), newEndLine - lineDelta);
+      update(document, newEndLine, offsetDelta, lineDelta);
+    }
+
+    @Override
+    public void beforeDocumentChange(DocumentEvent event) {
+      // A full build will pick up the change, and a bulk update is patched when it finishes.
+      active = hierarchy != null && !isBuilding() && !inBulkUpdate;
+      if (!active) {
+        return;
+      }
+
+      Document document = event.getDocument();
+      findRegion(document, document.getLineNumber(event.getOffset()),
+          document.getLineNumber(event.getOffset() + event.getOldLength()));
+    }
+
+    @Override
+    public void documentChanged(DocumentEvent event) {
+      if (inBulkUpdate) {
+        addBulkChange(event.getOffset(), event.getOldLength(), event.getNewLength());
+        return;
+      }
+      if (!active) {
+        return;
+      }
+
+      Document document = event.getDocument();
+      int newEndLine = document.getLineNumber(event.getOffset() + event.getNewLength());
+      update(document, newEndLine, event.getNewLength() - event.getOldLength(),
+          newEndLine - oldEndLine);
+    }
+
+    /**
+     * Grow the range of the bulk update to cover a change.
+     */
+    private void addBulkChange(int offset, int oldLength, int newLength) {
+      if (!bulkChanged) {
+        bulkChanged = true;
+        bulkStart = offset;
+        bulkEnd = offset + newLength;
+        return;
+      }
+
+      bulkStart = Math.min(bulkStart, offset);
+      if (offset >= bulkEnd) {
+        bulkEnd = offset + newLength;
+      } else {
+        bulkEnd = Math.max(bulkEnd, offset + oldLength) + newLength - oldLength;
+      }
+    }
+
+    /**
+     * Find the tests to scan again for a change. The text before the change must be the same as
+     * when the hierarchy was built.
+     *
+     * @param startLine The first line of the change.
+     * @param endLine The last line of the change, before it.
+     */
+    private void findRegion(Document document, int startLine, int endLine) {
+      oldEndLine = endLine;
+
+      // Include the line above, and the blank lines before it, in case the test ends in the
+      // changed lines.
+      regionStartLine = startLine;
+      if (regionStartLine > 0) {
+        do {
+          regionStartLine--;
+        } while (regionStartLine > 0 && isBlankLine(document, regionStartLine));
+      }
+
+      // The scan starts in code, before the tests that end in the region and the tests whose
+      // name is read from the changed lines. Only the text before the changed lines is read, it
+      // didn't change yet.
+      CharSequence text = document.getCharsSequence();
+      TestTable table = hierarchy.getTable();
+      int changeStart = document.getLineStartOffset(startLine);
+      int regionStart = document.getLineStartOffset(regionStartLine);
+      int previousStart;
+      do {
+        previousStart = regionStart;
+        int regionIndex = findMultiLineRegion(regionStart);
+        if (regionIndex != -1) {
+          regionStart = document.getLineStartOffset(
+              document.getLineNumber(multiLineRegions[regionIndex]));
+        }
+
+        fromIndex = hierarchy.indexOfFirstEndingAfter(regionStart);
+        if (fromIndex > 0 &&
+            TestRows.isNameReadAt(text, table.getEndOffset(fromIndex - 1), changeStart)) {
+          fromIndex--;
+        }
+        if (fromIndex < table.size()) {
+          int keywordLine = findKeywordLine(document,
+              Math.min(table.getEndOffset(fromIndex) - 1, changeStart));
+          regionStart = Math.min(regionStart, document.getLineStartOffset(keywordLine));
+        }
+      } while (regionStart != previousStart);
+      regionStartLine = document.getLineNumber(regionStart);
+    }
+
+    /**
+     * Scan the region again after the change and patch the hierarchy. The scan goes on past the
+     * change until a line starts in code, like it did before the change.
+     */
+    private void update(final Document document, int newEndLine, final int offsetDelta,
+        int lineDelta) {
+      final TestTable newRows = new TestTable(document.getImmutableCharSequence(), 4);
+      final List<Integer> newRegions = new ArrayList<Integer>();
+      int regionStart = document.getLineStartOffset(regionStartLine);
+
+      final CharSequence text = document.getCharsSequence();
+      JasmineScanner scanner = new JasmineScanner(text);
+      scanner.setRegionListener(new JasmineScanner.RegionListener() {
+        @Override
+        public void regionFound(int startOffset, int endOffset) {
+          newRegions.add(startOffset);
+          newRegions.add(endOffset);
+        }
+      });
+      scanner.setStopCondition(new JasmineScanner.StopCondition() {
+        @Override
+        public boolean canStopAt(int lineStart) {
+          // The text after the change was only shifted. It has to start in code, and the next
+          // test can't have its describe or it above the line.
+          int oldLineStart = lineStart - offsetDelta;
+          if (findMultiLineRegion(oldLineStart) != -1) {
+            return false;
+          }
+          int next = hierarchy.indexOfFirstEndingAfter(oldLineStart);
+          return next == hierarchy.getTable().size() || skipWhiteSpaceBackward(text,
+              hierarchy.getTable().getEndOffset(next) - 1 + offsetDelta) > lineStart;
+        }
+      });
+      scanner.scan(regionStart, regionStartLine, document.getLineEndOffset(newEndLine),
+          new JasmineScanner.MatchListener() {
+            @Override
+            public void matchFound(JasmineScanner.Match match) {
+              newRows.add(document, match.getEndOffset());
+            }
+          });
+
+      int oldStopOffset = scanner.getStopOffset() - offsetDelta;
+      toIndex = hierarchy.indexOfFirstStartingAfter(oldStopOffset - 1);
+      replaceMultiLineRegions(regionStart, oldStopOffset, newRegions, offsetDelta);
+
+      hierarchy.replace(fromIndex, toIndex, newRows, offsetDelta, lineDelta);
+      treeNode = null;
+      searchIndex = null;
+      modificationStamp = document.getModificationStamp();
+
+      TestTreeSnapshot previous = snapshot;
+      if (previous != null) {
+        snapshot = previous.update(hierarchy.getTable(), fromIndex, toIndex,
+            fromIndex + newRows.size(), modificationStamp);
+      }
+    }
+  }
+
+  /**
+   * Find the comment, string or template literal that spans lines around an offset.
+   *
+   * @return The index of its start in the regions, or -1 when the offset is in code or at the
+   * start or the end of a region.
+   */
+  private int findMultiLineRegion(int offset) {
+    // The regions don't overlap, they are sorted by offset.
+    int low = 0;
+    int high = multiLineRegions.length / 2;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (multiLineRegions[middle * 2] < offset) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    int index = (low - 1) * 2;
+    return index >= 0 && multiLineRegions[index + 1] > offset ? index : -1;
+  }
+
+  /**
+   * Replace the regions found in the lines that were scanned again, and move the regions below
+   * them.
+   *
+   * @param startOffset The start of the lines that were scanned again.
+   * @param oldEndOffset The end of the lines that were scanned again, before the change.
+   * @param newRegions The regions found in the lines.
+   */
+  private void replaceMultiLineRegions(int startOffset, int oldEndOffset,
+      List<Integer> newRegions, int offsetDelta) {
+    int before = 0;
+    while (before < multiLineRegions.length && multiLineRegions[before] < startOffset) {
+      before += 2;
+    }
+    int after = before;
+    while (after < multiLineRegions.length && multiLineRegions[after] < oldEndOffset) {
+      after += 2;
+    }
+
+    int[] regions = new int[before + newRegions.size() + multiLineRegions.length - after];
+    System.arraycopy(multiLineRegions, 0, regions, 0, before);
+    for (int i = 0; i < newRegions.size(); i++) {
+      regions[before + i] = newRegions.get(i);
+    }
+    for (int i = after, j = before + newRegions.size(); i < multiLineRegions.length; i++, j++) {
+      regions[j] = multiLineRegions[i] + offsetDelta;
+    }
+    multiLineRegions = regions;
+  }
+
+  /**
+   * Find the line of the describe or it of a test. The parenthesis can be on a following line.
+   *
+   * @param offset The offset of the parenthesis, or an offset in the white space before it.
+   */
+  private static int findKeywordLine(Document document, int offset) {
+    int keywordEnd = skipWhiteSpaceBackward(document.getCharsSequence(), offset);
+    return document.getLineNumber(Math.max(keywordEnd - 1, 0));
+  }
+
+  /**
+   * @return The offset after the last character before an offset that is not white space.
+   */
+  private static int skipWhiteSpaceBackward(CharSequence text, int offset) {
+    while (offset > 0 && Character.isWhitespace(text.charAt(offset - 1))) {
+      offset--;
+    }
+    return offset;
+  }
+
+  private static boolean isBlankLine(Document document, int line) {
+    CharSequence text = document.getCharsSequence();
+    int end = document.getLineEndOffset(line);
+    for (int i = document.getLineStartOffset(line); i < end; i++) {
+      if (!Character.isWhitespace(text.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * Register for change events.
    *
@@ -138,17 +560,106 @@ public class JasmineFile {
   }
 
   public boolean hasTestsMarkedToRun() {
-    return this.hierarchy.getMarkedElements().size() > 0;
+    return hierarchy.hasMarkedElements();
+  }
+
+  /**
+   * @return The modification stamp of the document when the tests were found or last updated.
+   */
+  public long getModificationStamp() {
+    return modificationStamp;
+  }
+
+  /**
+   * Forget the changes left by a dialog that was closed without applying them.
+   */
+  public void clearPendingChanges() {
+    hierarchy.getTable().clearPendingChangeStates();
   }
 
   VirtualFile getVirtualFile() {
     return virtualFile;
   }
 
+  /**
+   * @return True when the tree nodes were built and are up to date.
+   */
+  boolean hasTreeNode() {
+    return treeNode != null;
+  }
+
+  /**
+   * @return The tree with a node for every test.
+   */
   public TreeNode getTreeNode() {
+    if (treeNode == null && hierarchy != null) {
+      treeNode = populateTree(hierarchy.getTable());
+    }
     return treeNode;
   }
 
+  /**
+   * Get an immutable snapshot of the tests. A snapshot never changes, a new one is published
+   * after every edit.
+   *
+   * @return The snapshot for the current modification stamp.
+   */
+  public TestTreeSnapshot getSnapshot() {
+    TestTreeSnapshot current = snapshot;
+    if (current == null && hierarchy != null) {
+      current = TestTreeSnapshot.create(hierarchy.getTable(), modificationStamp);
+      snapshot = current;
+    }
+    return current;
+  }
+
+  /**
+   * Get a snapshot of the tests without asking the file to update it after every edit. For the
+   * views that read the tests again when the file changes.
+   *
+   * @return The snapshot for the current modification stamp.
+   */
+  public TestTreeSnapshot createDetachedSnapshot() {
+    TestTreeSnapshot current = snapshot;
+    if (current == null && hierarchy != null) {
+      current = TestTreeSnapshot.create(hierarchy.getTable(), modificationStamp);
+    }
+    return current;
+  }
+
+  /**
+   * @return The index to find tests by name, built the first time it is needed.
+   */
+  public TestSearchIndex getSearchIndex() {
+    if (searchIndex == null) {
+      searchIndex = new TestSearchIndex(hierarchy.getTable());
+    }
+    return searchIndex;
+  }
+
+  /**
+   * @return A tree model over the tests, its nodes are created when they are shown.
+   */
+  public TestTreeModel createTreeModel() {
+    return new TestTreeModel(hierarchy.getTable(), this, virtualFile);
+  }
+
+  /**
+   * @return All the tests in document order. The position in the list is the test index.
+   */
+  public List<TestFindResult> getAllTests() {
+    return hierarchy.getAllUnitTests();
+  }
+
+  /**
+   * Find a test by the offset of its describe or it, without going over all the tests.
+   *
+   * @return The test or null when no test starts at the offset.
+   */
+  public TestFindResult getTestAt(int startOffset) {
+    return hierarchy.getTestStartingAt(startOffset);
+  }
+
   public TestFindResult getClosestTestFromCaret(int caretOffset) {
     return hierarchy.getClosestTestFromCaret(caretOffset);
   }
@@ -158,30 +669,14 @@ public class JasmineFile {
   }
 
   /**
-   * Clean the file and notify all the changes.
+   * Clean the file and notify all the changes. The pending changes of the tests are ignored.
    */
   public void cleanFile() {
     Document document = ActionUtil.getDocument(getVirtualFile());
-    ActionUtil.changeTestList(project, document, hierarchy.getMarkedElements(),
-        JasmineSyntax.Version2);
+    ActionUtil.rollbackTestList(project, document, hierarchy.getMarkedElements());
   }
 
   public TestCounts getTestCounts() {
-    int excluded = 0;
-    int included = 0;
-    int testCount = 0;
-
-    for (TestFindResult findResult : hierarchy.getAllUnitTests()) {
-      if (findResult.getTestState() == TestState.Excluded) {
-        excluded++;
-      } else if (findResult.getTestState() == TestState.Included) {
-        included++;
-      }
-      if (!findResult.isDescribe()) {
-        testCount++;
-      }
-    }
-
-    return new TestCounts(testCount, included, excluded);
+    return hierarchy.getTestCounts();
   }
 }
@@ -0,0 +1,155 @@
+package com.karateca.ddescriber.model;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.karateca.ddescriber.ActionUtil;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the parsed jasmine files of a project so they are not parsed every time the dialog opens.
+ * <p/>
+ * The cached files follow the document changes incrementally. An entry is only used while its
+ * modification stamp matches the document. The least recently used entry is evicted when the
+ * cache is full.
+ */
+public class JasmineFileCache {
+  public static final int DEFAULT_MAX_SIZE = 32;
+
+  private final Project project;
+  private final int maxSize;
+  private final ConcurrentMap<VirtualFile, Entry> entries = new ConcurrentHashMap<VirtualFile, Entry>();
+  private final AtomicLong clock = new AtomicLong();
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+
+  private static class Entry {
+    final JasmineFile jasmineFile;
+    final Disposable disposable;
+    volatile long lastAccess;
+
+    Entry(JasmineFile jasmineFile, Disposable disposable, long lastAccess) {
+      this.jasmineFile = jasmineFile;
+      this.disposable = disposable;
+      this.lastAccess = lastAccess;
+    }
+  }
+
+  @SuppressWarnings("UnusedDeclaration")
+  public JasmineFileCache(Project project) {
+    this(project, DEFAULT_MAX_SIZE);
+  }
+
+  JasmineFileCache(Project project, int maxSize) {
+    this.project = project;
+    this.maxSize = maxSize;
+  }
+
+  public static JasmineFileCache getInstance(Project project) {
+    return ServiceManager.getService(project, JasmineFileCache.class);
+  }
+
+  /**
+   * Get the cached jasmine file if it is up to date with the document.
+   *
+   * @param virtualFile The file to look for.
+   * @return The jasmine file or null when it is not in the cache or it is out of date.
+   */
+  public JasmineFile getIfUpToDate(VirtualFile virtualFile) {
+    Entry entry = entries.get(virtualFile);
+    // Don't load the document of a file that is not in the cache.
+    Document document = entry == null ? null : ActionUtil.getDocument(virtualFile);
+
+    if (entry == null || document == null ||
+        entry.jasmineFile.getModificationStamp() != document.getModificationStamp()) {
+      missCount.incrementAndGet();
+      return null;
+    }
+
+    hitCount.incrementAndGet();
+    entry.lastAccess = clock.incrementAndGet();
+    return entry.jasmineFile;
+  }
+
+  /**
+   * Get the jasmine file from the cache, or find the tests and add it to the cache. Must be
+   * called from a read action. Only the tests are found, the tree nodes are built by the views
+   * that ask for them.
+   *
+   * @param virtualFile The file with the tests.
+   * @return The jasmine file, up to date with the document.
+   */
+  public JasmineFile getJasmineFile(VirtualFile virtualFile) {
+    JasmineFile jasmineFile = getIfUpToDate(virtualFile);
+    if (jasmineFile == null) {
+      jasmineFile = new JasmineFile(project, virtualFile);
+      jasmineFile.buildHierarchySync();
+      put(virtualFile, jasmineFile);
+    }
+    return jasmineFile;
+  }
+
+  /**
+   * Add a jasmine file with all its tests. The file is updated incrementally while cached.
+   *
+   * @param virtualFile The file with the tests.
+   * @param jasmineFile The tests found in the file.
+   */
+  public void put(VirtualFile virtualFile, JasmineFile jasmineFile) {
+    if (!jasmineFile.isComplete()) {
+      return;
+    }
+
+    Disposable disposable = Disposer.newDisposable();
+    Disposer.register(project, disposable);
+    jasmineFile.enableIncrementalUpdates(disposable);
+
+    Entry previous = entries.put(virtualFile,
+        new Entry(jasmineFile, disposable, clock.incrementAndGet()));
+    if (previous != null) {
+      Disposer.dispose(previous.disposable);
+    }
+
+    while (entries.size() > maxSize) {
+      evictLeastRecentlyUsed();
+    }
+  }
+
+  private void evictLeastRecentlyUsed() {
+    Map.Entry<VirtualFile, Entry> oldest = null;
+    for (Map.Entry<VirtualFile, Entry> mapEntry : entries.entrySet()) {
+      if (oldest == null || mapEntry.getValue().lastAccess < oldest.getValue().lastAccess) {
+        oldest = mapEntry;
+      }
+    }
+
+    if (oldest != null && entries.remove(oldest.getKey(), oldest.getValue())) {
+      Disposer.dispose(oldest.getValue().disposable);
+      evictionCount.incrementAndGet();
+    }
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+}
@@ -2,105 +2,99 @@ package com.karateca.ddescriber.model;
 
 import com.intellij.find.FindResult;
 import com.intellij.openapi.editor.Document;
-import com.intellij.openapi.util.TextRange;
-
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import com.karateca.ddescriber.core.TestState;
 
 /**
+ * A suite or a unit test. It is a view over a row of a {@link TestTable}.
+ *
  * @author Andres Dominguez.
  */
 public class TestFindResult {
 
-  private static final String REMOVE_START_OF_LINE =
-      "\\s*([xfd]?describe\\s*\\(|[xfi]?it\\s*\\()[\"\'](\\S+)";
-  private static final String REMOVE_END_OF_LINE = "(\\S+)([\"\'])(\\s*[,+]\\s*.*$)";
-  private final int indentation;
-  private final boolean isDescribe;
-  private final int endOffset;
-  private final int startOffset;
-  private final int lineNumber;
-  private String testText;
-  private TestState testState;
-  private TestState pendingChangeState;
-  public static final Pattern INDENTATION_PATTERN =
-      Pattern.compile("xit|fit|iit|it|xdescribe|fdescribe|ddescribe|describe");
+  private TestTable table;
+  private int index;
+  // The name shown in the tree.
+  private String displayName;
 
   public TestFindResult(Document document, FindResult findResult) {
-    endOffset = findResult.getEndOffset();
-
-    int lineNumber = document.getLineNumber(endOffset);
-    int startOfLine = document.getLineStartOffset(lineNumber);
-    int endOfLine = document.getLineEndOffset(lineNumber);
-    this.lineNumber = lineNumber + 1;
-
-    String lineText = document.getText(new TextRange(startOfLine, endOfLine));
-    isDescribe = lineText.matches("\\s*[xdf]?describe.*");
-
-    if (lineText.matches("\\s*([fd]describe|[fi]it).*")) {
-      testState = TestState.Included;
-    } else if (lineText.matches("\\s*(xdescribe|xit).*")) {
-      testState = TestState.Excluded;
-    } else {
-      testState = TestState.NotModified;
-    }
+    table = new TestTable(document.getImmutableCharSequence(), 1);
+    table.add(document, findResult.getEndOffset());
+    table.setView(0, this);
+    index = 0;
+  }
 
-    // Leave the Test text.
-    // TODO: improve this regular expression.
-    testText = lineText.replaceAll(REMOVE_END_OF_LINE, "$1");
-    testText = testText.replaceAll(REMOVE_START_OF_LINE, "$2");
+  TestFindResult(TestTable table, int index) {
+    this.table = table;
+    this.index = index;
+  }
 
-    // Calculate the indentation.
-    int indentation = 0;
-    Matcher matcher = INDENTATION_PATTERN.matcher(lineText);
-    if (matcher.find()) {
-      indentation = matcher.start();
-    }
-    this.indentation = indentation;
-    this.startOffset = startOfLine + indentation;
+  /**
+   * Follow the row after rows above it were added or removed.
+   */
+  void moveTo(int index) {
+    this.index = index;
+  }
+
+  /**
+   * Keep the values of the row after it is removed from the table.
+   */
+  void detach() {
+    table = table.copyRow(index);
+    table.setView(0, this);
+    index = 0;
+  }
+
+  /**
+   * @return The position of the test in the file, starting at zero.
+   */
+  public int getIndex() {
+    return index;
   }
 
   public int getIndentation() {
-    return indentation;
+    return table.getIndentation(index);
   }
 
   public boolean isDescribe() {
-    return isDescribe;
+    return table.isDescribe(index);
   }
 
   public int getEndOffset() {
-    return endOffset;
+    return table.getEndOffset(index);
   }
 
   public int getStartOffset() {
-    return startOffset;
+    return table.getStartOffset(index);
   }
 
   public int getLineNumber() {
-    return lineNumber;
+    return table.getLineNumber(index);
   }
 
   public String getTestText() {
-    return testText;
+    return table.getTestText(index);
   }
 
   public TestState getTestState() {
-    return testState;
+    return table.getTestState(index);
   }
 
   public void setTestState(TestState testState) {
-    this.testState = testState;
+    table.setTestState(index, testState);
   }
 
   public String toString() {
-    return testText.trim();
+    if (displayName == null) {
+      displayName = getTestText().trim();
+    }
+    return displayName;
   }
 
   public TestState getPendingChangeState() {
-    return pendingChangeState;
+    return table.getPendingChangeState(index);
   }
 
   public void setPendingChangeState(TestState pendingChangeState) {
-    this.pendingChangeState = pendingChangeState;
+    table.setPendingChangeState(index, pendingChangeState);
   }
 }
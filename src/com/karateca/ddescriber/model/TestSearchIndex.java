@@ -0,0 +1,165 @@
+package com.karateca.ddescriber.model;
+
+import java.util.Arrays;
+
+/**
+ * Finds tests by name. Keeps the lower case name of every test and an index of the three letter
+ * sequences (trigrams) in the names, so a search only checks the tests that have the rarest
+ * trigram of the pattern.
+ */
+public class TestSearchIndex {
+  private static final int GRAM_LENGTH = 3;
+  private static final int[] NO_ROWS = new int[0];
+
+  private final String[] names;
+  // The trigrams found in the names, sorted.
+  private final long[] grams;
+  // The rows with the trigram grams[i] go from postingOffsets[i] to postingOffsets[i + 1].
+  private final int[] postingOffsets;
+  private final int[] postings;
+
+  TestSearchIndex(TestTable table) {
+    int size = table.size();
+    names = new String[size];
+
+    // Collect the distinct trigrams of every row.
+    long[] entryGrams = new long[Math.max(size * 8, 16)];
+    int[] entryRows = new int[entryGrams.length];
+    int entryCount = 0;
+    for (int row = 0; row < size; row++) {
+      String name = table.getTestText(row).trim().toLowerCase();
+      names[row] = name;
+
+      long[] rowGrams = gramsOf(name);
+      for (int i = 0; i < rowGrams.length; i++) {
+        if (i > 0 && rowGrams[i] == rowGrams[i - 1]) {
+          continue;
+        }
+        if (entryCount == entryGrams.length) {
+          entryGrams = Arrays.copyOf(entryGrams, entryCount * 2);
+          entryRows = Arrays.copyOf(entryRows, entryCount * 2);
+        }
+        entryGrams[entryCount] = rowGrams[i];
+        entryRows[entryCount] = row;
+        entryCount++;
+      }
+    }
+
+    // Find the distinct trigrams.
+    long[] sortedGrams = Arrays.copyOf(entryGrams, entryCount);
+    Arrays.sort(sortedGrams);
+    int gramCount = 0;
+    for (int i = 0; i < entryCount; i++) {
+      if (gramCount == 0 || sortedGrams[gramCount - 1] != sortedGrams[i]) {
+        sortedGrams[gramCount++] = sortedGrams[i];
+      }
+    }
+    grams = Arrays.copyOf(sortedGrams, gramCount);
+
+    // Count the rows of every trigram, then fill them in document order.
+    int[] gramIndexes = new int[entryCount];
+    postingOffsets = new int[gramCount + 1];
+    for (int i = 0; i < entryCount; i++) {
+      gramIndexes[i] = Arrays.binarySearch(grams, entryGrams[i]);
+      postingOffsets[gramIndexes[i] + 1]++;
+    }
+    for (int i = 0; i < gramCount; i++) {
+      postingOffsets[i + 1] += postingOffsets[i];
+    }
+
+    postings = new int[entryCount];
+    int[] next = Arrays.copyOf(postingOffsets, gramCount);
+    for (int i = 0; i < entryCount; i++) {
+      postings[next[gramIndexes[i]]++] = entryRows[i];
+    }
+  }
+
+  /**
+   * @return The sorted trigrams of a text, with duplicates.
+   */
+  private static long[] gramsOf(String text) {
+    int count = Math.max(text.length() - GRAM_LENGTH + 1, 0);
+    long[] result = new long[count];
+    for (int i = 0; i < count; i++) {
+      result[i] = gramAt(text, i);
+    }
+    Arrays.sort(result);
+    return result;
+  }
+
+  private static long gramAt(String text, int offset) {
+    return ((long) text.charAt(offset) << 32) | ((long) text.charAt(offset + 1) << 16) |
+        text.charAt(offset + 2);
+  }
+
+  public int size() {
+    return names.length;
+  }
+
+  /**
+   * @return The name of the test in lower case, as it is shown in the tree.
+   */
+  public String getLowerCaseName(int row) {
+    return names[row];
+  }
+
+  /**
+   * @param row The index of the test.
+   * @param lowerCasePattern The text to look for, in lower case.
+   * @return True when the name of the test contains the pattern.
+   */
+  public boolean matches(int row, String lowerCasePattern) {
+    return names[row].contains(lowerCasePattern);
+  }
+
+  /**
+   * Find the tests whose name contains a pattern.
+   *
+   * @param lowerCasePattern The text to look for, in lower case.
+   * @return The indexes of the matching tests, in document order.
+   */
+  public int[] search(String lowerCasePattern) {
+    if (lowerCasePattern.length() < GRAM_LENGTH) {
+      return filter(null, 0, names.length, lowerCasePattern);
+    }
+
+    // Only check the rows that have the least common trigram of the pattern.
+    int bestFrom = -1;
+    int bestTo = -1;
+    for (int i = 0; i + GRAM_LENGTH <= lowerCasePattern.length(); i++) {
+      int gramIndex = Arrays.binarySearch(grams, gramAt(lowerCasePattern, i));
+      if (gramIndex < 0) {
+        return NO_ROWS;
+      }
+      int from = postingOffsets[gramIndex];
+      int to = postingOffsets[gramIndex + 1];
+      if (bestFrom == -1 || to - from < bestTo - bestFrom) {
+        bestFrom = from;
+        bestTo = to;
+      }
+    }
+
+    return filter(postings, bestFrom, bestTo, lowerCasePattern);
+  }
+
+  /**
+   * Keep the rows that match a pattern.
+   *
+   * @param rows The rows to check, or null to check the rows from one index to the other.
+   * @param from The first index to check.
+   * @param to The index after the last one to check.
+   * @param lowerCasePattern The text to look for, in lower case.
+   * @return The matching rows, in the same order.
+   */
+  public int[] filter(int[] rows, int from, int to, String lowerCasePattern) {
+    int[] result = new int[to - from];
+    int resultCount = 0;
+    for (int i = from; i < to; i++) {
+      int row = rows == null ? i : rows[i];
+      if (matches(row, lowerCasePattern)) {
+        result[resultCount++] = row;
+      }
+    }
+    return resultCount == result.length ? result : Arrays.copyOf(result, resultCount);
+  }
+}
@@ -0,0 +1,129 @@
+package com.karateca.ddescriber.model;
+
+import com.intellij.openapi.editor.Document;
+import com.karateca.ddescriber.core.TestRows;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The rows of a document. {@link TestFindResult} is a view over a row, created only when it is
+ * needed.
+ * <p/>
+ * The highlighting passes and the dialog read the table at the same time, so the views are
+ * created under the table lock. The rows only change in write actions.
+ */
+class TestTable extends TestRows {
+  private TestFindResult[] views;
+
+  /**
+   * @param source The document snapshot the tests are read from.
+   * @param capacity The initial number of rows.
+   */
+  TestTable(CharSequence source, int capacity) {
+    super(source, capacity);
+    views = new TestFindResult[Math.max(capacity, 1)];
+  }
+
+  @Override
+  protected void ensureCapacity(int capacity) {
+    super.ensureCapacity(capacity);
+    if (capacity > views.length) {
+      views = Arrays.copyOf(views, Math.max(capacity, views.length * 2));
+    }
+  }
+
+  /**
+   * Add the test that ends at an offset of the document. The document already knows where its
+   * lines are.
+   *
+   * @param document The document, its contents must be the same as the source.
+   * @param endOffset The offset after the open parenthesis of the describe or it.
+   */
+  void add(Document document, int endOffset) {
+    int lineNumber = document.getLineNumber(endOffset);
+    add(endOffset, lineNumber, document.getLineStartOffset(lineNumber),
+        document.getLineEndOffset(lineNumber));
+  }
+
+  /**
+   * Replace a range of rows with the rows found after an edit and shift the rows below it.
+   * The views of the removed rows keep their values, the views of the shifted rows follow them.
+   */
+  @Override
+  public synchronized void replace(int fromIndex, int toIndex, TestRows newRows, int offsetDelta,
+      int lineDelta) {
+    int oldSize = size();
+    for (int i = fromIndex; i < toIndex; i++) {
+      if (views[i] != null) {
+        views[i].detach();
+      }
+    }
+
+    int newTo = fromIndex + newRows.size();
+    int newSize = oldSize - (toIndex - fromIndex) + newRows.size();
+    ensureCapacity(newSize);
+    System.arraycopy(views, toIndex, views, newTo, oldSize - toIndex);
+    Arrays.fill(views, fromIndex, newTo, null);
+    if (newSize < oldSize) {
+      Arrays.fill(views, newSize, oldSize, null);
+    }
+
+    super.replace(fromIndex, toIndex, newRows, offsetDelta, lineDelta);
+
+    for (int i = newTo; i < newSize; i++) {
+      if (views[i] != null) {
+        views[i].moveTo(i);
+      }
+    }
+  }
+
+  /**
+   * Copy a row to a table of its own.
+   */
+  TestTable copyRow(int index) {
+    TestTable copy = new TestTable(getSource(), 1);
+    copy.addRow(this, index);
+    return copy;
+  }
+
+  /**
+   * Get the view of a row, creating it the first time.
+   */
+  synchronized TestFindResult get(int index) {
+    TestFindResult view = views[index];
+    if (view == null) {
+      view = new TestFindResult(this, index);
+      views[index] = view;
+    }
+    return view;
+  }
+
+  synchronized void setView(int index, TestFindResult view) {
+    views[index] = view;
+  }
+
+  /**
+   * @return A list of views over all the rows.
+   */
+  List<TestFindResult> asList() {
+    return new ViewList();
+  }
+
+  private class ViewList extends AbstractList<TestFindResult> implements RandomAccess {
+    @Override
+    public TestFindResult get(int index) {
+      if (index < 0 || index >= size()) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+      }
+      return TestTable.this.get(index);
+    }
+
+    @Override
+    public int size() {
+      return TestTable.this.size();
+    }
+  }
+}
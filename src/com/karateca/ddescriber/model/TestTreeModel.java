@@ -0,0 +1,345 @@
+package com.karateca.ddescriber.model;
+
+import com.intellij.openapi.vfs.VirtualFile;
+
+import javax.swing.event.EventListenerList;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Tree model that reads the suites and unit tests straight from the parsed file. The node of a
+ * test is only created when the tree asks for it.
+ * <p/>
+ * The root is the only top level describe, or a node with the file name when there are many.
+ * <p/>
+ * The tree can be filtered to the tests whose name contains a text, and the suites above them.
+ */
+public class TestTreeModel implements TreeModel {
+  private final TestTable table;
+  private final JasmineFile jasmineFile;
+  private final VirtualFile virtualFile;
+  private final TreeNode[] nodes;
+  private final TreeNode root;
+  private final EventListenerList listeners = new EventListenerList();
+
+  // The visible rows when the tree is filtered, null when every row is visible.
+  private VisibleRows visibleRows;
+  private String filterText;
+  private int[] filterMatches;
+
+  TestTreeModel(TestTable table, JasmineFile jasmineFile, VirtualFile virtualFile) {
+    this.table = table;
+    this.jasmineFile = jasmineFile;
+    this.virtualFile = virtualFile;
+    nodes = new TreeNode[table.size()];
+
+    if (table.getChildCount(TestTable.NO_PARENT) == 1) {
+      root = getNode(table.getChild(TestTable.NO_PARENT, 0));
+    } else {
+      root = new TreeNode(virtualFile.getName(), virtualFile);
+    }
+    root.setTopNode(true);
+  }
+
+  private TreeNode getNode(int row) {
+    TreeNode node = nodes[row];
+    if (node == null) {
+      node = new TreeNode(table.get(row), virtualFile);
+      nodes[row] = node;
+    }
+    return node;
+  }
+
+  /**
+   * @return The row of the node, or NO_PARENT for the node with the file name.
+   */
+  private int getRow(Object node) {
+    Object userObject = ((TreeNode) node).getUserObject();
+    return userObject instanceof TestFindResult ?
+        ((TestFindResult) userObject).getIndex() : TestTable.NO_PARENT;
+  }
+
+  @Override
+  public TreeNode getRoot() {
+    return root;
+  }
+
+  @Override
+  public Object getChild(Object parent, int index) {
+    int row = getRow(parent);
+    return getNode(visibleRows == null ?
+        table.getChild(row, index) : visibleRows.getChild(row, index));
+  }
+
+  @Override
+  public int getChildCount(Object parent) {
+    int row = getRow(parent);
+    return visibleRows == null ? table.getChildCount(row) : visibleRows.getChildCount(row);
+  }
+
+  @Override
+  public boolean isLeaf(Object node) {
+    return node != root && getChildCount(node) == 0;
+  }
+
+  @Override
+  public int getIndexOfChild(Object parent, Object child) {
+    if (parent == null || child == null) {
+      return -1;
+    }
+    int parentRow = getRow(parent);
+    int childRow = getRow(child);
+    return visibleRows == null ? table.getIndexOfChild(parentRow, childRow) :
+        visibleRows.getIndexOfChild(parentRow, childRow);
+  }
+
+  /**
+   * Get the path from the root to a test. Only the nodes in the path are created.
+   *
+   * @param test A test in the model.
+   * @return The path or null when the test is not in the tree.
+   */
+  public TreePath getPath(TestFindResult test) {
+    if (test == null || test.getIndex() >= table.size() || table.get(test.getIndex()) != test ||
+        (visibleRows != null && !visibleRows.visible.get(test.getIndex()))) {
+      return null;
+    }
+
+    // Count the levels first to fill the path from the root.
+    int rootRow = getRow(root);
+    int depth = 1;
+    for (int row = test.getIndex(); row != rootRow; row = table.getParent(row)) {
+      depth++;
+    }
+
+    Object[] path = new Object[depth];
+    path[0] = root;
+    int row = test.getIndex();
+    for (int i = depth - 1; i > 0; i--) {
+      path[i] = getNode(row);
+      row = table.getParent(row);
+    }
+    return new TreePath(path);
+  }
+
+  /**
+   * Tell the tree a test changed, so its row is painted again.
+   */
+  public void nodeChanged(TestFindResult test) {
+    TreePath path = getPath(test);
+    if (path == null) {
+      return;
+    }
+
+    TreeModelEvent event;
+    TreePath parentPath = path.getParentPath();
+    if (parentPath == null) {
+      event = new TreeModelEvent(this, path);
+    } else {
+      Object node = path.getLastPathComponent();
+      event = new TreeModelEvent(this, parentPath,
+          new int[]{getIndexOfChild(parentPath.getLastPathComponent(), node)}, new Object[]{node});
+    }
+
+    for (TreeModelListener listener : listeners.getListeners(TreeModelListener.class)) {
+      listener.treeNodesChanged(event);
+    }
+  }
+
+  /**
+   * Show only the tests whose name contains a text, and the suites above them. The tree is
+   * told which nodes were removed and inserted, it is not built again.
+   *
+   * @param text The text to look for, or an empty text to show all the tests.
+   */
+  public void setFilter(String text) {
+    String lowerCaseText = text.toLowerCase();
+    if (lowerCaseText.equals(filterText) || (lowerCaseText.isEmpty() && filterText == null)) {
+      return;
+    }
+
+    BitSet visible = null;
+    int[] matches = null;
+    if (!lowerCaseText.isEmpty()) {
+      TestSearchIndex searchIndex = jasmineFile.getSearchIndex();
+      if (filterText != null && lowerCaseText.contains(filterText)) {
+        // A longer text only matches tests that matched before.
+        matches = searchIndex.filter(filterMatches, 0, filterMatches.length, lowerCaseText);
+      } else {
+        matches = searchIndex.search(lowerCaseText);
+      }
+      visible = getVisibleRows(matches);
+    }
+
+    filterText = lowerCaseText.isEmpty() ? null : lowerCaseText;
+    filterMatches = matches;
+    changeVisibleRows(visible);
+  }
+
+  /**
+   * @return The number of tests shown in the tree.
+   */
+  public int getVisibleCount() {
+    return visibleRows == null ? table.size() : visibleRows.visible.cardinality();
+  }
+
+  /**
+   * @return The matching tests and their suites.
+   */
+  private BitSet getVisibleRows(int[] matches) {
+    BitSet visible = new BitSet(table.size());
+    int rootRow = getRow(root);
+    if (rootRow != TestTable.NO_PARENT) {
+      visible.set(rootRow);
+    }
+
+    for (int match : matches) {
+      for (int row = match; row != TestTable.NO_PARENT && !visible.get(row);
+          row = table.getParent(row)) {
+        visible.set(row);
+      }
+    }
+    return visible;
+  }
+
+  /**
+   * Remove the rows that are no longer visible, then insert the new ones.
+   *
+   * @param visible The rows to show, null to show all of them.
+   */
+  private void changeVisibleRows(BitSet visible) {
+    VisibleRows oldRows = visibleRows;
+    BitSet oldVisible = oldRows != null ? oldRows.visible : allRows();
+    BitSet newVisible = visible != null ? visible : allRows();
+
+    BitSet kept = (BitSet) oldVisible.clone();
+    kept.and(newVisible);
+
+    visibleRows = new VisibleRows(kept);
+    fireChildrenChanged(kept, oldRows, newVisible, false);
+
+    visibleRows = visible != null ? new VisibleRows(visible) : null;
+    fireChildrenChanged(kept, visibleRows, kept, true);
+  }
+
+  private BitSet allRows() {
+    BitSet all = new BitSet(table.size());
+    all.set(0, table.size());
+    return all;
+  }
+
+  /**
+   * Notify the children of the kept rows that were removed or inserted.
+   *
+   * @param kept The rows that are visible before and after the change.
+   * @param rows The visible rows to get the children from, null for all the rows.
+   * @param stays A child that is not in this set was removed or inserted.
+   * @param inserted True to notify insertions, false for removals.
+   */
+  private void fireChildrenChanged(BitSet kept, VisibleRows rows, BitSet stays,
+      boolean inserted) {
+    if (getRow(root) == TestTable.NO_PARENT) {
+      fireChildrenChanged(TestTable.NO_PARENT, rows, stays, inserted);
+    }
+    for (int parent = kept.nextSetBit(0); parent >= 0; parent = kept.nextSetBit(parent + 1)) {
+      fireChildrenChanged(parent, rows, stays, inserted);
+    }
+  }
+
+  private void fireChildrenChanged(int parent, VisibleRows rows, BitSet stays, boolean inserted) {
+    int childCount = rows == null ? table.getChildCount(parent) : rows.getChildCount(parent);
+    int changedCount = 0;
+    int[] indexes = null;
+    Object[] children = null;
+
+    for (int i = 0; i < childCount; i++) {
+      int child = rows == null ? table.getChild(parent, i) : rows.getChild(parent, i);
+      if (stays.get(child)) {
+        continue;
+      }
+      if (indexes == null) {
+        indexes = new int[childCount - i];
+        children = new Object[childCount - i];
+      }
+      indexes[changedCount] = i;
+      children[changedCount] = getNode(child);
+      changedCount++;
+    }
+
+    if (changedCount == 0) {
+      return;
+    }
+
+    TreePath parentPath =
+        parent == TestTable.NO_PARENT ? new TreePath(root) : getPath(table.get(parent));
+    TreeModelEvent event = new TreeModelEvent(this, parentPath,
+        Arrays.copyOf(indexes, changedCount), Arrays.copyOf(children, changedCount));
+    for (TreeModelListener listener : listeners.getListeners(TreeModelListener.class)) {
+      if (inserted) {
+        listener.treeNodesInserted(event);
+      } else {
+        listener.treeNodesRemoved(event);
+      }
+    }
+  }
+
+  /**
+   * The children of every visible row, grouped by parent like in the table.
+   */
+  private class VisibleRows {
+    final BitSet visible;
+    private final int[] childOffsets;
+    private final int[] children;
+
+    VisibleRows(BitSet visible) {
+      this.visible = visible;
+      childOffsets = new int[table.size() + 2];
+      children = new int[visible.cardinality()];
+
+      for (int row = visible.nextSetBit(0); row >= 0; row = visible.nextSetBit(row + 1)) {
+        childOffsets[table.getParent(row) + 2]++;
+      }
+      for (int i = 1; i < childOffsets.length; i++) {
+        childOffsets[i] += childOffsets[i - 1];
+      }
+
+      int[] next = Arrays.copyOf(childOffsets, childOffsets.length);
+      for (int row = visible.nextSetBit(0); row >= 0; row = visible.nextSetBit(row + 1)) {
+        children[next[table.getParent(row) + 1]++] = row;
+      }
+    }
+
+    int getChildCount(int parent) {
+      return childOffsets[parent + 2] - childOffsets[parent + 1];
+    }
+
+    int getChild(int parent, int index) {
+      return children[childOffsets[parent + 1] + index];
+    }
+
+    int getIndexOfChild(int parent, int child) {
+      int from = childOffsets[parent + 1];
+      int index = Arrays.binarySearch(children, from, childOffsets[parent + 2], child);
+      return index < 0 ? -1 : index - from;
+    }
+  }
+
+  @Override
+  public void valueForPathChanged(TreePath path, Object newValue) {
+    // The tree is not editable.
+  }
+
+  @Override
+  public void addTreeModelListener(TreeModelListener listener) {
+    listeners.add(TreeModelListener.class, listener);
+  }
+
+  @Override
+  public void removeTreeModelListener(TreeModelListener listener) {
+    listeners.remove(TreeModelListener.class, listener);
+  }
+}
@@ -0,0 +1,402 @@
+package com.karateca.ddescriber.model;
+
+import com.karateca.ddescriber.core.TestState;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Immutable view of the suites and unit tests of a file at one point in time.
+ * <p/>
+ * A new snapshot shares every subtree that did not change with the previous one, only the nodes
+ * above an edit are created again. The line numbers and offsets are stored relative to the
+ * parent, so the subtrees below an edit can be shared too.
+ */
+public final class TestTreeSnapshot {
+  private static final Node[] NO_CHILDREN = new Node[0];
+
+  private final Node root;
+  private final long modificationStamp;
+
+  private TestTreeSnapshot(Node root, long modificationStamp) {
+    this.root = root;
+    this.modificationStamp = modificationStamp;
+  }
+
+  /**
+   * A suite or a unit test. The root of a snapshot is a node without a name that holds the top
+   * level tests.
+   */
+  public static final class Node {
+    private final String name;
+    private final TestState testState;
+    private final boolean describe;
+    private final int lineDelta;
+    private final int offsetDelta;
+    private final int rowCount;
+    private final Node[] children;
+
+    private Node(String name, TestState testState, boolean describe, int lineDelta,
+        int offsetDelta, int rowCount, Node[] children) {
+      this.name = name;
+      this.testState = testState;
+      this.describe = describe;
+      this.lineDelta = lineDelta;
+      this.offsetDelta = offsetDelta;
+      this.rowCount = rowCount;
+      this.children = children;
+    }
+
+    /**
+     * Share the children with a node that moved.
+     */
+    private Node moveTo(int lineDelta, int offsetDelta) {
+      if (lineDelta == this.lineDelta && offsetDelta == this.offsetDelta) {
+        return this;
+      }
+      return new Node(name, testState, describe, lineDelta, offsetDelta, rowCount, children);
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public TestState getTestState() {
+      return testState;
+    }
+
+    public boolean isDescribe() {
+      return describe;
+    }
+
+    /**
+     * @param parentLineNumber The line number of the parent, zero for the top level tests.
+     * @return The line number, starting at one.
+     */
+    public int getLineNumber(int parentLineNumber) {
+      return parentLineNumber + lineDelta;
+    }
+
+    /**
+     * @param parentStartOffset The start offset of the parent, zero for the top level tests.
+     * @return The offset of the describe or it.
+     */
+    public int getStartOffset(int parentStartOffset) {
+      return parentStartOffset + offsetDelta;
+    }
+
+    /**
+     * @return The number of tests in the subtree, including this one.
+     */
+    public int getRowCount() {
+      return rowCount;
+    }
+
+    public List<Node> getChildren() {
+      return new ChildList(children);
+    }
+
+    /**
+     * Find a child by its offset, the children are sorted by offset.
+     *
+     * @return The index of the child, or -1 when it is not a child of this node.
+     */
+    public int indexOfChild(Node child) {
+      int low = 0;
+      int high = children.length - 1;
+      while (low <= high) {
+        int middle = (low + high) >>> 1;
+        int middleOffset = children[middle].offsetDelta;
+        if (middleOffset < child.offsetDelta) {
+          low = middle + 1;
+        } else if (middleOffset > child.offsetDelta) {
+          high = middle - 1;
+        } else {
+          return children[middle] == child ? middle : -1;
+        }
+      }
+      return -1;
+    }
+
+    public String toString() {
+      return name;
+    }
+  }
+
+  private static class ChildList extends AbstractList<Node> implements RandomAccess {
+    private final Node[] children;
+
+    ChildList(Node[] children) {
+      this.children = children;
+    }
+
+    @Override
+    public Node get(int index) {
+      return children[index];
+    }
+
+    @Override
+    public int size() {
+      return children.length;
+    }
+  }
+
+  /**
+   * @return The node that holds the top level tests.
+   */
+  public Node getRoot() {
+    return root;
+  }
+
+  /**
+   * @return The number of tests in the snapshot.
+   */
+  public int size() {
+    return root.rowCount - 1;
+  }
+
+  /**
+   * @return The modification stamp of the document the snapshot was taken from.
+   */
+  public long getModificationStamp() {
+    return modificationStamp;
+  }
+
+  /**
+   * Take a snapshot of all the tests.
+   */
+  static TestTreeSnapshot create(TestTable table, long modificationStamp) {
+    return new Builder(table, null, 0, 0, 0).build(modificationStamp);
+  }
+
+  /**
+   * Take a snapshot after an edit, sharing the subtrees that did not change with this one.
+   *
+   * @param table The tests after the edit.
+   * @param fromIndex The first row that was replaced.
+   * @param oldToIndex The row after the last replaced row, before the edit.
+   * @param newToIndex The row after the last replaced row, after the edit.
+   * @param modificationStamp The document modification stamp after the edit.
+   * @return The new snapshot.
+   */
+  TestTreeSnapshot update(TestTable table, int fromIndex, int oldToIndex, int newToIndex,
+      long modificationStamp) {
+    return new Builder(table, this, fromIndex, oldToIndex, newToIndex).build(modificationStamp);
+  }
+
+  /**
+   * Creates the nodes of the rows that changed and reuses the rest from the previous snapshot.
+   */
+  private static class Builder {
+    private final TestTable table;
+    private final TestTreeSnapshot previous;
+    private final int fromIndex;
+    private final int oldToIndex;
+    private final int newToIndex;
+    private Cursor cursor;
+
+    Builder(TestTable table, TestTreeSnapshot previous, int fromIndex, int oldToIndex,
+        int newToIndex) {
+      this.table = table;
+      this.previous = previous;
+      this.fromIndex = fromIndex;
+      this.oldToIndex = oldToIndex;
+      this.newToIndex = newToIndex;
+    }
+
+    TestTreeSnapshot build(long modificationStamp) {
+      Node previousRoot = previous != null ? previous.root : null;
+      Node[] children = buildChildren(TestTable.NO_PARENT, table.size(), 0, 0, previousRoot);
+      return new TestTreeSnapshot(
+          new Node(null, TestState.NotModified, true, 0, 0, table.size() + 1, children),
+          modificationStamp);
+    }
+
+    /**
+     * @param parent The parent row.
+     * @param parentEnd The row after the last one in the subtree of the parent.
+     * @param previousParent The node of the parent in the previous snapshot when the parent is
+     * above the edit, or null.
+     */
+    private Node[] buildChildren(int parent, int parentEnd, int parentLine, int parentOffset,
+        Node previousParent) {
+      int count = table.getChildCount(parent);
+      if (count == 0) {
+        return NO_CHILDREN;
+      }
+
+      Node[] children = new Node[count];
+      int first = 0;
+      int last = count;
+      if (previousParent != null) {
+        // The children before the edit and the rows below them did not change, and neither did
+        // the parent, so they are the same nodes.
+        first = Math.max(countChildrenBefore(parent, count, fromIndex) - 1, 0);
+        System.arraycopy(previousParent.children, 0, children, 0, first);
+        last = reuseChildrenAfterEdit(parent, parentEnd, parentLine, parentOffset,
+            previousParent, first, children);
+      }
+
+      for (int i = first; i < last; i++) {
+        int row = table.getChild(parent, i);
+        int end = i + 1 < count ? table.getChild(parent, i + 1) : parentEnd;
+        Node previousNode = null;
+        if (previousParent != null && row < fromIndex) {
+          // The same row, above the edit.
+          previousNode = previousParent.children[i];
+        }
+        children[i] = buildNode(row, end, parentLine, parentOffset, previousNode);
+      }
+      return children;
+    }
+
+    /**
+     * @return The number of children of the parent with a row before a row.
+     */
+    private int countChildrenBefore(int parent, int count, int row) {
+      int low = 0;
+      int high = count;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (table.getChild(parent, middle) < row) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low;
+    }
+
+    /**
+     * Reuse the last children of the parent that are below the edit, matching them from the end
+     * with the children of the previous parent.
+     *
+     * @return The index after the last child that was not reused.
+     */
+    private int reuseChildrenAfterEdit(int parent, int parentEnd, int parentLine,
+        int parentOffset, Node previousParent, int first, Node[] children) {
+      Node[] previousChildren = previousParent.children;
+      int last = children.length;
+      int previousIndex = previousChildren.length;
+      int end = parentEnd;
+      // The previous parent is above the edit, at the same row.
+      int previousEnd = parent + previousParent.rowCount;
+
+      while (last > first && previousIndex > first) {
+        int row = table.getChild(parent, last - 1);
+        Node previousNode = previousChildren[previousIndex - 1];
+        int previousRow = previousEnd - previousNode.rowCount;
+        if (row < newToIndex || previousRow != row - newToIndex + oldToIndex
+            || previousNode.rowCount != end - row) {
+          break;
+        }
+
+        children[last - 1] = previousNode.moveTo(table.getLineNumber(row) - parentLine,
+            table.getStartOffset(row) - parentOffset);
+        end = row;
+        previousEnd = previousRow;
+        previousIndex--;
+        last--;
+      }
+      return last;
+    }
+
+    /**
+     * @param previousNode The node of the row in the previous snapshot when the row is above the
+     * edit, or null.
+     */
+    private Node buildNode(int row, int end, int parentLine, int parentOffset,
+        Node previousNode) {
+      int lineNumber = table.getLineNumber(row);
+      int startOffset = table.getStartOffset(row);
+      int lineDelta = lineNumber - parentLine;
+      int offsetDelta = startOffset - parentOffset;
+
+      if (previous != null && previousNode == null && row >= newToIndex) {
+        // A row below the edit that is under a new parent.
+        if (cursor == null) {
+          cursor = new Cursor(previous.root);
+        }
+        previousNode = cursor.find(row - newToIndex + oldToIndex);
+      }
+      if (previousNode != null && previousNode.rowCount == end - row
+          && (end <= fromIndex || row >= newToIndex)) {
+        return previousNode.moveTo(lineDelta, offsetDelta);
+      }
+
+      // Only a row above the edit keeps its previous node for its children.
+      Node previousParent = row < fromIndex ? previousNode : null;
+      return new Node(table.getTestText(row), table.getTestState(row), table.isDescribe(row),
+          lineDelta, offsetDelta, end - row,
+          buildChildren(row, end, lineNumber, startOffset, previousParent));
+    }
+  }
+
+  /**
+   * Finds the nodes of a snapshot by row. The nodes are built in row order, so the rows are
+   * looked up in increasing order and the search continues where the last one stopped.
+   */
+  private static class Cursor {
+    // The path from the root to the last node found.
+    private Node[] nodes = new Node[16];
+    private int[] nodeRows = new int[16];
+    // The child of every node in the path where the search continues, and its row.
+    private int[] childIndexes = new int[16];
+    private int[] childRows = new int[16];
+    private int depth;
+
+    Cursor(Node root) {
+      push(root, -1);
+    }
+
+    private void push(Node node, int nodeRow) {
+      if (depth == nodes.length) {
+        nodes = Arrays.copyOf(nodes, depth * 2);
+        nodeRows = Arrays.copyOf(nodeRows, depth * 2);
+        childIndexes = Arrays.copyOf(childIndexes, depth * 2);
+        childRows = Arrays.copyOf(childRows, depth * 2);
+      }
+      nodes[depth] = node;
+      nodeRows[depth] = nodeRow;
+      childIndexes[depth] = 0;
+      childRows[depth] = nodeRow + 1;
+      depth++;
+    }
+
+    /**
+     * @param row The row to find, not lower than the row of the last call.
+     * @return The node of the row, or null when there is no such row.
+     */
+    Node find(int row) {
+      // Go up to the node that holds the row.
+      while (depth > 0 && row >= nodeRows[depth - 1] + nodes[depth - 1].rowCount) {
+        depth--;
+      }
+
+      while (depth > 0) {
+        int top = depth - 1;
+        if (nodeRows[top] == row) {
+          return nodes[top];
+        }
+
+        // Skip the children before the row, they are not looked up again.
+        Node[] children = nodes[top].children;
+        int index = childIndexes[top];
+        int childRow = childRows[top];
+        while (index < children.length && row >= childRow + children[index].rowCount) {
+          childRow += children[index].rowCount;
+          index++;
+        }
+        childIndexes[top] = index;
+        childRows[top] = childRow;
+        if (index == children.length) {
+          return null;
+        }
+        push(children[index], childRow);
+      }
+      return null;
+    }
+  }
+}
@@ -0,0 +1,575 @@
+package com.karateca.ddescriber.toolwindow;
+
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.progress.impl.BackgroundableProcessIndicator;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.karateca.ddescriber.ActionUtil;
+import com.karateca.ddescriber.core.TestState;
+import com.karateca.ddescriber.index.FocusedTestIndex;
+import com.karateca.ddescriber.model.JasmineFile;
+import com.karateca.ddescriber.model.TestTreeSnapshot;
+
+import javax.swing.event.EventListenerList;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The spec files of a project that have focused or excluded tests, sorted by path.
+ * <p/>
+ * The files come from {@link FocusedTestIndex}. The tests of a file are only read when its node
+ * is expanded, and only the files that changed are checked again. The children of a file are the
+ * nodes of a {@link TestTreeSnapshot}.
+ * <p/>
+ * The model is changed on the event dispatch thread. The index and the files are read in the
+ * background: {@link #readAllCounts} and {@link #readCounts} find the counts that
+ * {@link #reload(List)} and {@link #update(List)} apply, and the tests of a file are read by a
+ * background task that tells the listeners when they are ready.
+ */
+public class FocusedFilesModel implements TreeModel {
+  private static final Comparator<FileEntry> BY_PATH = new Comparator<FileEntry>() {
+    @Override
+    public int compare(FileEntry left, FileEntry right) {
+      return left.path.compareTo(right.path);
+    }
+  };
+
+  private final Project project;
+  private final Object root = new Object();
+  private final List<FileEntry> files = new ArrayList<FileEntry>();
+  private final Map<VirtualFile, FileEntry> entriesByFile = new HashMap<VirtualFile, FileEntry>();
+  private final EventListenerList listeners = new EventListenerList();
+
+  /**
+   * A file with marked tests.
+   */
+  public static class FileEntry {
+    private final VirtualFile file;
+    private final String path;
+    private int includedCount;
+    private int excludedCount;
+    private TestTreeSnapshot snapshot;
+    private LoadTask loadTask;
+
+    FileEntry(VirtualFile file) {
+      this.file = file;
+      this.path = file.getPath();
+    }
+
+    public VirtualFile getFile() {
+      return file;
+    }
+
+    public int getIncludedCount() {
+      return includedCount;
+    }
+
+    public int getExcludedCount() {
+      return excludedCount;
+    }
+
+    /**
+     * @return True when the tests of the file were read.
+     */
+    public boolean isLoaded() {
+      return snapshot != null;
+    }
+
+    @Override
+    public String toString() {
+      return file.getName();
+    }
+  }
+
+  /**
+   * The number of marked tests of a file, read in the background.
+   */
+  public static class FileCounts {
+    private final VirtualFile file;
+    private final String path;
+    private final int includedCount;
+    private final int excludedCount;
+
+    FileCounts(VirtualFile file, int includedCount, int excludedCount) {
+      this.file = file;
+      this.path = file.getPath();
+      this.includedCount = includedCount;
+      this.excludedCount = excludedCount;
+    }
+
+    boolean hasMarkedTests() {
+      return includedCount + excludedCount > 0;
+    }
+  }
+
+  public FocusedFilesModel(Project project) {
+    this.project = project;
+  }
+
+  /**
+   * Find all the files with marked tests in the index. Must be called from a read action when
+   * the index is ready, it doesn't touch the model.
+   *
+   * @return The counts to {@link #reload(List)} the model with.
+   */
+  public static List<FileCounts> readAllCounts(Project project) {
+    GlobalSearchScope scope = GlobalSearchScope.projectScope(project);
+    Set<VirtualFile> found = new LinkedHashSet<VirtualFile>();
+    found.addAll(FocusedTestIndex.getFilesWithTests(TestState.Included, scope));
+    found.addAll(FocusedTestIndex.getFilesWithTests(TestState.Excluded, scope));
+
+    List<FileCounts> counts = new ArrayList<FileCounts>(found.size());
+    for (VirtualFile file : found) {
+      counts.add(readCounts(project, file));
+    }
+    return counts;
+  }
+
+  /**
+   * Check the files that changed again, and the files below the directories that changed. Must
+   * be called from a read action when the index is ready, it doesn't touch the model.
+   *
+   * @param changedFiles The files and directories that were changed, created, moved or deleted.
+   * @param listedFiles The files in the model when the changes were reported.
+   * @return The counts to {@link #update(List)} the model with.
+   */
+  public static List<FileCounts> readCounts(Project project,
+      Collection<VirtualFile> changedFiles, Collection<VirtualFile> listedFiles) {
+    Set<VirtualFile> toCheck = new LinkedHashSet<VirtualFile>();
+    boolean directoryChanged = false;
+    for (VirtualFile changed : changedFiles) {
+      if (changed.isValid() && changed.isDirectory()) {
+        directoryChanged = true;
+        for (VirtualFile file : listedFiles) {
+          if (VfsUtilCore.isAncestor(changed, file, false)) {
+            toCheck.add(file);
+          }
+        }
+      } else {
+        toCheck.add(changed);
+      }
+    }
+
+    if (directoryChanged) {
+      // A directory that was created or moved in can hold files with marked tests.
+      GlobalSearchScope scope = GlobalSearchScope.projectScope(project);
+      toCheck.addAll(FocusedTestIndex.getFilesWithTests(TestState.Included, scope));
+      toCheck.addAll(FocusedTestIndex.getFilesWithTests(TestState.Excluded, scope));
+    }
+
+    // The files below a deleted directory are not reported one by one.
+    for (VirtualFile file : listedFiles) {
+      if (!file.isValid()) {
+        toCheck.add(file);
+      }
+    }
+
+    List<FileCounts> counts = new ArrayList<FileCounts>(toCheck.size());
+    for (VirtualFile file : toCheck) {
+      counts.add(readCounts(project, file));
+    }
+    return counts;
+  }
+
+  private static FileCounts readCounts(Project project, VirtualFile file) {
+    if (!file.isValid() || !FocusedTestIndex.isJavaScriptFile(file) ||
+        !GlobalSearchScope.projectScope(project).contains(file)) {
+      return new FileCounts(file, 0, 0);
+    }
+    return new FileCounts(file,
+        FocusedTestIndex.getTestOffsets(project, file, TestState.Included).length,
+        FocusedTestIndex.getTestOffsets(project, file, TestState.Excluded).length);
+  }
+
+  /**
+   * Show the files found by {@link #readAllCounts}.
+   */
+  public void reload(List<FileCounts> counts) {
+    for (FileEntry entry : files) {
+      entry.loadTask = null;
+    }
+    files.clear();
+    entriesByFile.clear();
+    for (FileCounts fileCounts : counts) {
+      if (fileCounts.hasMarkedTests()) {
+        FileEntry entry = createEntry(fileCounts);
+        files.add(entry);
+        entriesByFile.put(entry.file, entry);
+      }
+    }
+    Collections.sort(files, BY_PATH);
+
+    fireTreeStructureChanged(new TreePath(root));
+  }
+
+  /**
+   * Apply the changes found by {@link #readCounts}.
+   */
+  public void update(List<FileCounts> counts) {
+    for (FileCounts fileCounts : counts) {
+      fileChanged(fileCounts);
+    }
+  }
+
+  /**
+   * @return The files in the model, to read the changes in the background.
+   */
+  public List<VirtualFile> getFiles() {
+    List<VirtualFile> listedFiles = new ArrayList<VirtualFile>(files.size());
+    for (FileEntry entry : files) {
+      listedFiles.add(entry.file);
+    }
+    return listedFiles;
+  }
+
+  private static FileEntry createEntry(FileCounts counts) {
+    FileEntry entry = new FileEntry(counts.file);
+    entry.includedCount = counts.includedCount;
+    entry.excludedCount = counts.excludedCount;
+    return entry;
+  }
+
+  private void fileChanged(FileCounts counts) {
+    FileEntry entry = entriesByFile.get(counts.file);
+    if (!counts.hasMarkedTests()) {
+      if (entry != null) {
+        removeEntry(entry);
+      }
+      return;
+    }
+
+    if (entry == null || !entry.path.equals(counts.path)) {
+      // New or moved, the file goes to another position.
+      if (entry != null) {
+        removeEntry(entry);
+      }
+      insertEntry(createEntry(counts));
+      return;
+    }
+
+    entry.includedCount = counts.includedCount;
+    entry.excludedCount = counts.excludedCount;
+    if (entry.snapshot != null || entry.loadTask != null) {
+      // Read the tests again the next time they are shown.
+      entry.snapshot = null;
+      entry.loadTask = null;
+      fireTreeStructureChanged(new TreePath(new Object[]{root, entry}));
+    } else {
+      fireTreeNodesChanged(new TreePath(root), indexOf(entry), entry);
+    }
+  }
+
+  /**
+   * Find an entry by its path. A file that was deleted can have the same path as a new one.
+   */
+  private int indexOf(FileEntry entry) {
+    int index = Collections.binarySearch(files, entry, BY_PATH);
+    if (index >= 0 && files.get(index) == entry) {
+      return index;
+    }
+    return files.indexOf(entry);
+  }
+
+  private void insertEntry(FileEntry entry) {
+    int index = Collections.binarySearch(files, entry, BY_PATH);
+    if (index < 0) {
+      index = -index - 1;
+    }
+    files.add(index, entry);
+    entriesByFile.put(entry.file, entry);
+    fireTreeNodesInserted(new TreePath(root), index, entry);
+  }
+
+  private void removeEntry(FileEntry entry) {
+    entry.loadTask = null;
+    int index = indexOf(entry);
+    files.remove(index);
+    entriesByFile.remove(entry.file);
+    fireTreeNodesRemoved(new TreePath(root), index, entry);
+  }
+
+  /**
+   * @return The number of files with marked tests.
+   */
+  public int getFileCount() {
+    return files.size();
+  }
+
+  /**
+   * @return The entry of a file, or null when the file has no marked tests.
+   */
+  public FileEntry getEntry(VirtualFile file) {
+    return entriesByFile.get(file);
+  }
+
+  /**
+   * Get the tests of a file, or start reading them in the background the first time. The model
+   * reads the tests again when the file changes.
+   *
+   * @return The tests, or null until they are read.
+   */
+  private TestTreeSnapshot getSnapshot(FileEntry entry) {
+    if (entry.snapshot == null && entry.loadTask == null) {
+      entry.loadTask = new LoadTask(entry);
+      ProgressManager.getInstance().runProcessWithProgressAsynchronously(entry.loadTask,
+          new BackgroundableProcessIndicator(entry.loadTask));
+    }
+    return entry.snapshot;
+  }
+
+  /**
+   * Reads the tests of a file under a non-blocking read action, without the shared cache of
+   * parsed files. The listeners are told on the UI thread once the tests are read.
+   */
+  private class LoadTask extends Task.Backgroundable {
+    private final FileEntry entry;
+    private TestTreeSnapshot newSnapshot;
+
+    LoadTask(FileEntry entry) {
+      super(project, "Reading jasmine tests", true);
+      this.entry = entry;
+    }
+
+    @Override
+    public void run(ProgressIndicator indicator) {
+      ActionUtil.runNonBlockingReadAction(new Runnable() {
+        @Override
+        public void run() {
+          newSnapshot = null;
+          if (!entry.file.isValid()) {
+            return;
+          }
+          JasmineFile jasmineFile = new JasmineFile(project, entry.file);
+          jasmineFile.buildHierarchySync(new Runnable() {
+            @Override
+            public void run() {
+              ProgressManager.checkCanceled();
+            }
+          });
+          newSnapshot = jasmineFile.createDetachedSnapshot();
+        }
+      }, indicator);
+    }
+
+    @Override
+    public void onSuccess() {
+      // Ignore the tests of a file that changed or was removed while they were read.
+      if (entry.loadTask != this || newSnapshot == null) {
+        return;
+      }
+      entry.snapshot = newSnapshot;
+      fireTreeStructureChanged(new TreePath(new Object[]{root, entry}));
+    }
+
+    @Override
+    public void onCancel() {
+      // Read them again the next time they are shown.
+      if (entry.loadTask == this) {
+        entry.loadTask = null;
+      }
+    }
+  }
+
+  /**
+   * Get the offset of the test at the end of a path.
+   *
+   * @return The offset of the describe or it, or -1 when the path does not end in a test.
+   */
+  public static int getStartOffset(TreePath path) {
+    int offset = -1;
+    for (Object component : path.getPath()) {
+      if (component instanceof FileEntry) {
+        offset = 0;
+      } else if (component instanceof TestTreeSnapshot.Node) {
+        offset = ((TestTreeSnapshot.Node) component).getStartOffset(offset);
+      }
+    }
+    return path.getLastPathComponent() instanceof TestTreeSnapshot.Node ? offset : -1;
+  }
+
+  /**
+   * Get what identifies the nodes of a path across updates: the file, then the position of every
+   * test in its parent. Tests with the same name are told apart, and a renamed test keeps its
+   * key.
+   *
+   * @return The keys, or null when the path is not in the model.
+   */
+  public Object[] getKeys(TreePath path) {
+    Object[] components = path.getPath();
+    Object[] keys = new Object[components.length - 1];
+    for (int i = 1; i < components.length; i++) {
+      if (i == 1) {
+        keys[0] = ((FileEntry) components[i]).file;
+      } else {
+        int index = getIndexOfChild(components[i - 1], components[i]);
+        if (index < 0) {
+          return null;
+        }
+        keys[i - 1] = index;
+      }
+    }
+    return keys;
+  }
+
+  /**
+   * Find the path to the nodes with the keys of a path of an older version of the model.
+   *
+   * @return The path, or null when a node is not there any more or the tests of the file are
+   * still being read.
+   */
+  public TreePath findPath(Object[] keys) {
+    FileEntry entry = entriesByFile.get(keys[0]);
+    if (entry == null) {
+      return null;
+    }
+
+    TreePath path = new TreePath(new Object[]{root, entry});
+    for (int i = 1; i < keys.length; i++) {
+      Object parent = path.getLastPathComponent();
+      int index = (Integer) keys[i];
+      if (index >= getChildCount(parent)) {
+        return null;
+      }
+      path = path.pathByAddingChild(getChild(parent, index));
+    }
+    return path;
+  }
+
+  /**
+   * @return True when the tests of the file of the keys are being read.
+   */
+  public boolean isLoading(Object[] keys) {
+    FileEntry entry = entriesByFile.get(keys[0]);
+    return entry != null && entry.loadTask != null && entry.snapshot == null;
+  }
+
+  @Override
+  public Object getRoot() {
+    return root;
+  }
+
+  /**
+   * @return The node with the children of a parent, or null when the tests are still being read.
+   */
+  private TestTreeSnapshot.Node getParentNode(Object parent) {
+    if (parent instanceof FileEntry) {
+      TestTreeSnapshot snapshot = getSnapshot((FileEntry) parent);
+      return snapshot == null ? null : snapshot.getRoot();
+    }
+    return (TestTreeSnapshot.Node) parent;
+  }
+
+  private List<TestTreeSnapshot.Node> getTestNodes(Object parent) {
+    TestTreeSnapshot.Node parentNode = getParentNode(parent);
+    if (parentNode == null) {
+      return Collections.emptyList();
+    }
+    return parentNode.getChildren();
+  }
+
+  @Override
+  public Object getChild(Object parent, int index) {
+    if (parent == root) {
+      return files.get(index);
+    }
+    return getTestNodes(parent).get(index);
+  }
+
+  @Override
+  public int getChildCount(Object parent) {
+    if (parent == root) {
+      return files.size();
+    }
+    return getTestNodes(parent).size();
+  }
+
+  @Override
+  public boolean isLeaf(Object node) {
+    // Don't read the tests of a file to draw it.
+    if (node == root || node instanceof FileEntry) {
+      return false;
+    }
+    return ((TestTreeSnapshot.Node) node).getChildren().isEmpty();
+  }
+
+  @Override
+  public void valueForPathChanged(TreePath path, Object newValue) {
+    // The tree is not editable.
+  }
+
+  @Override
+  public int getIndexOfChild(Object parent, Object child) {
+    if (parent == null || child == null) {
+      return -1;
+    }
+    if (parent == root) {
+      if (!(child instanceof FileEntry)) {
+        return -1;
+      }
+      return indexOf((FileEntry) child);
+    }
+    TestTreeSnapshot.Node parentNode = getParentNode(parent);
+    if (parentNode == null || !(child instanceof TestTreeSnapshot.Node)) {
+      return -1;
+    }
+    return parentNode.indexOfChild((TestTreeSnapshot.Node) child);
+  }
+
+  @Override
+  public void addTreeModelListener(TreeModelListener listener) {
+    listeners.add(TreeModelListener.class, listener);
+  }
+
+  @Override
+  public void removeTreeModelListener(TreeModelListener listener) {
+    listeners.remove(TreeModelListener.class, listener);
+  }
+
+  private void fireTreeStructureChanged(TreePath path) {
+    TreeModelEvent event = new TreeModelEvent(this, path);
+    for (TreeModelListener listener : listeners.getListeners(TreeModelListener.class)) {
+      listener.treeStructureChanged(event);
+    }
+  }
+
+  private static TreeModelEvent createEvent(Object source, TreePath parentPath, int index,
+      Object child) {
+    return new TreeModelEvent(source, parentPath, new int[]{index}, new Object[]{child});
+  }
+
+  private void fireTreeNodesChanged(TreePath parentPath, int index, Object child) {
+    TreeModelEvent event = createEvent(this, parentPath, index, child);
+    for (TreeModelListener listener : listeners.getListeners(TreeModelListener.class)) {
+      listener.treeNodesChanged(event);
+    }
+  }
+
+  private void fireTreeNodesInserted(TreePath parentPath, int index, Object child) {
+    TreeModelEvent event = createEvent(this, parentPath, index, child);
+    for (TreeModelListener listener : listeners.getListeners(TreeModelListener.class)) {
+      listener.treeNodesInserted(event);
+    }
+  }
+
+  private void fireTreeNodesRemoved(TreePath parentPath, int index, Object child) {
+    TreeModelEvent event = createEvent(this, parentPath, index, child);
+    for (TreeModelListener listener : listeners.getListeners(TreeModelListener.class)) {
+      listener.treeNodesRemoved(event);
+    }
+  }
+}
@@ -0,0 +1,294 @@
+package com.karateca.ddescriber.toolwindow;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.event.DocumentAdapter;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileEditor.OpenFileDescriptor;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.treeStructure.Tree;
+import com.intellij.util.Alarm;
+import com.intellij.util.messages.MessageBusConnection;
+import com.karateca.ddescriber.index.FocusedTestIndex;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreePath;
+import java.awt.*;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Shows the spec files of the project that have focused or excluded tests.
+ * <p/>
+ * The files are found once in the index. After that only the files reported by the file system
+ * and document events are checked again, a short time after the last event. The index is read in
+ * a background task, one update at a time.
+ */
+public class FocusedFilesPanel extends JPanel implements Disposable {
+  // Wait for the typing to stop before checking the files again.
+  private static final int UPDATE_DELAY = 300;
+
+  private final Project project;
+  private final FocusedFilesModel model;
+  private final Tree tree;
+  private final Alarm updateAlarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, this);
+  private final Set<VirtualFile> changedFiles = new LinkedHashSet<VirtualFile>();
+  // The keys of the expanded paths waiting for the tests of their file.
+  private final List<Object[]> pendingExpandedKeys = new ArrayList<Object[]>();
+  private boolean reloadAll = true;
+  private boolean updating;
+  private boolean disposed;
+  private final Runnable updateRunnable = new Runnable() {
+    @Override
+    public void run() {
+      updateChangedFiles();
+    }
+  };
+
+  public FocusedFilesPanel(Project project) {
+    super(new BorderLayout());
+    this.project = project;
+
+    model = new FocusedFilesModel(project);
+    tree = new Tree(model);
+    tree.setRootVisible(false);
+    tree.setShowsRootHandles(true);
+
+    // Only the visible rows are drawn, every row has the same font and icon size.
+    FocusedFilesRenderer renderer = new FocusedFilesRenderer();
+    tree.setCellRenderer(renderer);
+    tree.setRowHeight(renderer.getTreeCellRendererComponent(
+        tree, model.getRoot(), false, true, false, 0, false).getPreferredSize().height);
+    tree.setLargeModel(true);
+
+    // Jump to the test on double click or enter.
+    tree.addMouseListener(new MouseAdapter() {
+      public void mousePressed(MouseEvent e) {
+        if (e.getClickCount() == 2) {
+          goToTest(tree.getPathForLocation(e.getX(), e.getY()));
+        }
+      }
+    });
+    tree.addKeyListener(new KeyAdapter() {
+      @Override
+      public void keyPressed(KeyEvent keyEvent) {
+        if (keyEvent.getKeyCode() == KeyEvent.VK_ENTER) {
+          goToTest(tree.getSelectionPath());
+        }
+      }
+    });
+
+    add(BorderLayout.CENTER, new JBScrollPane(tree));
+
+    // Added after the tree, so the tree has seen the tests of a file before they are expanded.
+    model.addTreeModelListener(new TreeModelListener() {
+      @Override
+      public void treeNodesChanged(TreeModelEvent e) {
+      }
+
+      @Override
+      public void treeNodesInserted(TreeModelEvent e) {
+      }
+
+      @Override
+      public void treeNodesRemoved(TreeModelEvent e) {
+      }
+
+      @Override
+      public void treeStructureChanged(TreeModelEvent e) {
+        expandPendingPaths();
+      }
+    });
+
+    listenToChanges();
+    updateChangedFiles();
+  }
+
+  private void listenToChanges() {
+    MessageBusConnection connection = project.getMessageBus().connect(this);
+    connection.subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener.Adapter() {
+      @Override
+      public void after(@NotNull List<? extends VFileEvent> events) {
+        for (VFileEvent event : events) {
+          VirtualFile file = event.getFile();
+          if (file != null && (file.isDirectory() || FocusedTestIndex.isJavaScriptFile(file))) {
+            fileChanged(file);
+          }
+        }
+      }
+    });
+
+    // The unsaved changes are not file system events.
+    EditorFactory.getInstance().getEventMulticaster().addDocumentListener(new DocumentAdapter() {
+      @Override
+      public void documentChanged(DocumentEvent event) {
+        VirtualFile file = FileDocumentManager.getInstance().getFile(event.getDocument());
+        if (file != null && FocusedTestIndex.isJavaScriptFile(file)) {
+          fileChanged(file);
+        }
+      }
+    }, this);
+  }
+
+  private void fileChanged(VirtualFile file) {
+    changedFiles.add(file);
+    updateAlarm.cancelAllRequests();
+    updateAlarm.addRequest(updateRunnable, UPDATE_DELAY);
+  }
+
+  /**
+   * Read the counts of the changed files in the background, then show them. The changes
+   * reported while an update runs wait for it to finish.
+   */
+  private void updateChangedFiles() {
+    if (updating || disposed || project.isDisposed() || (!reloadAll && changedFiles.isEmpty())) {
+      return;
+    }
+
+    List<VirtualFile> files = new ArrayList<VirtualFile>(changedFiles);
+    UpdateTask updateTask = new UpdateTask(reloadAll, files, model.getFiles());
+    reloadAll = false;
+    changedFiles.clear();
+    updating = true;
+    ProgressManager.getInstance().run(updateTask);
+  }
+
+  /**
+   * Reads the counts of the changed files, or of all the files, when the index is ready.
+   */
+  private class UpdateTask extends Task.Backgroundable {
+    private final boolean reload;
+    private final List<VirtualFile> files;
+    private final List<VirtualFile> listedFiles;
+    private List<FocusedFilesModel.FileCounts> counts;
+
+    UpdateTask(boolean reload, List<VirtualFile> files, List<VirtualFile> listedFiles) {
+      super(project, "Finding marked tests", false);
+      this.reload = reload;
+      this.files = files;
+      this.listedFiles = listedFiles;
+    }
+
+    @Override
+    public void run(ProgressIndicator indicator) {
+      // Waits for the indexing to finish.
+      counts = DumbService.getInstance(project).runReadActionInSmartMode(
+          new Computable<List<FocusedFilesModel.FileCounts>>() {
+            @Override
+            public List<FocusedFilesModel.FileCounts> compute() {
+              if (reload) {
+                return FocusedFilesModel.readAllCounts(project);
+              }
+              return FocusedFilesModel.readCounts(project, files, listedFiles);
+            }
+          });
+    }
+
+    @Override
+    public void onSuccess() {
+      updating = false;
+      if (disposed) {
+        return;
+      }
+
+      List<Object[]> expandedKeys = getExpandedKeys();
+      expandedKeys.addAll(pendingExpandedKeys);
+      pendingExpandedKeys.clear();
+      if (reload) {
+        model.reload(counts);
+      } else {
+        model.update(counts);
+      }
+      restoreExpandedPaths(expandedKeys);
+
+      // Check the files that changed during the update.
+      if (!changedFiles.isEmpty()) {
+        updateAlarm.cancelAllRequests();
+        updateAlarm.addRequest(updateRunnable, UPDATE_DELAY);
+      }
+    }
+  }
+
+  private List<Object[]> getExpandedKeys() {
+    List<Object[]> keys = new ArrayList<Object[]>();
+    Enumeration<TreePath> expanded = tree.getExpandedDescendants(new TreePath(model.getRoot()));
+    while (expanded != null && expanded.hasMoreElements()) {
+      TreePath path = expanded.nextElement();
+      if (path.getPathCount() > 1) {
+        Object[] pathKeys = model.getKeys(path);
+        if (pathKeys != null) {
+          keys.add(pathKeys);
+        }
+      }
+    }
+    return keys;
+  }
+
+  /**
+   * The tests of a file that changed are read again, expand the same tests as before once they
+   * are read.
+   */
+  private void restoreExpandedPaths(List<Object[]> expandedKeys) {
+    pendingExpandedKeys.clear();
+    pendingExpandedKeys.addAll(expandedKeys);
+    expandPendingPaths();
+  }
+
+  private void expandPendingPaths() {
+    List<Object[]> keysToExpand = new ArrayList<Object[]>(pendingExpandedKeys);
+    pendingExpandedKeys.clear();
+    for (Object[] keys : keysToExpand) {
+      TreePath path = model.findPath(keys);
+      if (path != null) {
+        tree.expandPath(path);
+      } else if (model.isLoading(keys)) {
+        pendingExpandedKeys.add(keys);
+      }
+    }
+  }
+
+  private void goToTest(TreePath path) {
+    if (path == null || path.getPathCount() < 2) {
+      return;
+    }
+
+    VirtualFile file = ((FocusedFilesModel.FileEntry) path.getPathComponent(1)).getFile();
+    if (!file.isValid()) {
+      return;
+    }
+    int offset = FocusedFilesModel.getStartOffset(path);
+    new OpenFileDescriptor(project, file, Math.max(offset, 0)).navigate(true);
+  }
+
+  FocusedFilesModel getModel() {
+    return model;
+  }
+
+  @Override
+  public void dispose() {
+    disposed = true;
+    changedFiles.clear();
+    pendingExpandedKeys.clear();
+  }
+}
@@ -0,0 +1,63 @@
+package com.karateca.ddescriber.toolwindow;
+
+import com.intellij.ui.ColoredTreeCellRenderer;
+import com.intellij.ui.SimpleTextAttributes;
+import com.karateca.ddescriber.dialog.DialogIcons;
+import com.karateca.ddescriber.model.TestTreeSnapshot;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+
+/**
+ * Draws a spec file with the number of marked tests, or a test with the icon of its state.
+ */
+class FocusedFilesRenderer extends ColoredTreeCellRenderer {
+
+  @Override
+  public void customizeCellRenderer(@NotNull JTree tree, Object value, boolean selected,
+      boolean expanded, boolean leaf, int row, boolean hasFocus) {
+    if (value instanceof FocusedFilesModel.FileEntry) {
+      FocusedFilesModel.FileEntry entry = (FocusedFilesModel.FileEntry) value;
+      setIcon(entry.getFile().getFileType().getIcon());
+      append(entry.getFile().getName());
+      append("  " + getCountText(entry), SimpleTextAttributes.GRAYED_ATTRIBUTES);
+      return;
+    }
+
+    if (value instanceof TestTreeSnapshot.Node) {
+      TestTreeSnapshot.Node node = (TestTreeSnapshot.Node) value;
+      setIcon(getIcon(node));
+      append(node.getName().trim());
+      return;
+    }
+
+    // The hidden root.
+    setIcon(DialogIcons.descIcon);
+    append("Jasmine tests");
+  }
+
+  private static String getCountText(FocusedFilesModel.FileEntry entry) {
+    StringBuilder text = new StringBuilder();
+    if (entry.getIncludedCount() > 0) {
+      text.append(entry.getIncludedCount()).append(" focused");
+    }
+    if (entry.getExcludedCount() > 0) {
+      if (text.length() > 0) {
+        text.append(", ");
+      }
+      text.append(entry.getExcludedCount()).append(" excluded");
+    }
+    return text.toString();
+  }
+
+  private static Icon getIcon(TestTreeSnapshot.Node node) {
+    switch (node.getTestState()) {
+      case Included:
+        return DialogIcons.itGreenIcon;
+      case Excluded:
+        return DialogIcons.itRedIcon;
+      default:
+        return node.isDescribe() ? DialogIcons.descIcon : DialogIcons.itGrayIcon;
+    }
+  }
+}
@@ -0,0 +1,23 @@
+package com.karateca.ddescriber.toolwindow;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowFactory;
+import com.intellij.ui.content.Content;
+import com.intellij.ui.content.ContentFactory;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Creates the tool window with the focused and excluded tests of the project.
+ */
+public class FocusedFilesToolWindowFactory implements ToolWindowFactory {
+
+  @Override
+  public void createToolWindowContent(@NotNull Project project, @NotNull ToolWindow toolWindow) {
+    FocusedFilesPanel panel = new FocusedFilesPanel(project);
+    Content content = ContentFactory.SERVICE.getInstance().createContent(panel, "", false);
+    Disposer.register(content, panel);
+    toolWindow.getContentManager().addContent(content);
+  }
+}
@@ -0,0 +1,223 @@
+package com.karateca.ddescriber.vcs;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileEditor.impl.LoadTextUtil;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.IndexNotReadyException;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.karateca.ddescriber.core.JasmineScanner;
+import com.karateca.ddescriber.core.TestState;
+import com.karateca.ddescriber.index.FocusedTestIndex;
+import com.karateca.ddescriber.model.JasmineFile;
+import com.karateca.ddescriber.model.JasmineFileCache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds the files that have an fdescribe, ddescribe, fit or iit, without opening a document for
+ * every file.
+ * <p/>
+ * The files come from the focused test index. While the index is not ready the files are
+ * scanned in parallel until the time budget runs out, using the cached tests of the files that
+ * are in the cache. The scans stop at the deadline, or when their thread is interrupted.
+ */
+public class FocusedFileFinder {
+  /**
+   * How long (in milliseconds) the files can be scanned before giving up on the rest.
+   */
+  public static final long DEFAULT_TIME_BUDGET =
+      Long.getLong("ddescriber.checkin.time.budget", 1000);
+
+  private static final int MAX_PARALLELISM = 4;
+
+  // Stops the scan of a file that was not scanned in time.
+  private static final Runnable STOP_WHEN_INTERRUPTED = new Runnable() {
+    @Override
+    public void run() {
+      if (Thread.currentThread().isInterrupted()) {
+        throw new CancellationException("The scan was interrupted");
+      }
+    }
+  };
+
+  private final Project project;
+  private boolean complete = true;
+
+  public FocusedFileFinder(Project project) {
+    this.project = project;
+  }
+
+  /**
+   * @param files The files to check, the files that are not JavaScript are skipped.
+   * @param timeBudget How long (in milliseconds) the files can be scanned when there is no index.
+   * @return The files with focused tests, in the same order.
+   */
+  public List<VirtualFile> find(Collection<VirtualFile> files, long timeBudget) {
+    List<VirtualFile> jsFiles = new ArrayList<VirtualFile>();
+    for (VirtualFile file : files) {
+      if (file.isValid() && !file.isDirectory() && FocusedTestIndex.isJavaScriptFile(file)) {
+        jsFiles.add(file);
+      }
+    }
+    if (jsFiles.isEmpty()) {
+      return jsFiles;
+    }
+
+    List<VirtualFile> focusedFiles = findInIndex(jsFiles);
+    if (focusedFiles == null) {
+      return findByScanning(jsFiles, timeBudget);
+    }
+    return focusedFiles;
+  }
+
+  /**
+   * @return False when the time budget ran out before all the files were scanned.
+   */
+  public boolean isComplete() {
+    return complete;
+  }
+
+  /**
+   * @return The files with focused tests, or null when the index is not ready.
+   */
+  private List<VirtualFile> findInIndex(final List<VirtualFile> files) {
+    Collection<VirtualFile> focusedFiles = ApplicationManager.getApplication().runReadAction(
+        new Computable<Collection<VirtualFile>>() {
+          @Override
+          public Collection<VirtualFile> compute() {
+            if (DumbService.getInstance(project).isDumb()) {
+              return null;
+            }
+            try {
+              return FocusedTestIndex.getFilesWithTests(TestState.Included,
+                  GlobalSearchScope.filesScope(project, files));
+            } catch (IndexNotReadyException e) {
+              // The indexing started after the check.
+              return null;
+            }
+          }
+        });
+    if (focusedFiles == null) {
+      return null;
+    }
+
+    Set<VirtualFile> focused = new HashSet<VirtualFile>(focusedFiles);
+    List<VirtualFile> result = new ArrayList<VirtualFile>();
+    for (VirtualFile file : files) {
+      if (focused.contains(file)) {
+        result.add(file);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Scan the files in parallel. The files that are not scanned in time are left out.
+   */
+  List<VirtualFile> findByScanning(List<VirtualFile> files, long timeBudget) {
+    final long deadline = System.currentTimeMillis() + timeBudget;
+    List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>(files.size());
+    for (final VirtualFile file : files) {
+      tasks.add(new Callable<Boolean>() {
+        @Override
+        public Boolean call() {
+          return ApplicationManager.getApplication().runReadAction(new Computable<Boolean>() {
+            @Override
+            public Boolean compute() {
+              return hasFocusedTests(file, deadline);
+            }
+          });
+        }
+      });
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(
+        Math.min(MAX_PARALLELISM, Runtime.getRuntime().availableProcessors()));
+    List<VirtualFile> result = new ArrayList<VirtualFile>();
+    try {
+      List<Future<Boolean>> futures = executor.invokeAll(tasks, timeBudget, TimeUnit.MILLISECONDS);
+      for (int i = 0; i < futures.size(); i++) {
+        try {
+          if (futures.get(i).get()) {
+            result.add(files.get(i));
+          }
+        } catch (CancellationException e) {
+          complete = false;
+        } catch (ExecutionException e) {
+          complete = false;
+        }
+      }
+    } catch (InterruptedException e) {
+      complete = false;
+      Thread.currentThread().interrupt();
+    } finally {
+      executor.shutdownNow();
+    }
+    return result;
+  }
+
+  private boolean hasFocusedTests(VirtualFile file, long deadline) {
+    STOP_WHEN_INTERRUPTED.run();
+    if (!file.isValid()) {
+      return false;
+    }
+
+    JasmineFile jasmineFile = JasmineFileCache.getInstance(project).getIfUpToDate(file);
+    if (jasmineFile != null) {
+      return jasmineFile.getTestCounts().getIncludedCount() > 0;
+    }
+
+    // Use the unsaved changes when the file is open, read the file otherwise.
+    Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+    CharSequence text =
+        document != null ? document.getImmutableCharSequence() : LoadTextUtil.loadText(file);
+    return hasFocusedTests(text, deadline);
+  }
+
+  static boolean hasFocusedTests(CharSequence text) {
+    return hasFocusedTests(text, Long.MAX_VALUE);
+  }
+
+  /**
+   * Scan a file until a focused test is found, the deadline is reached or the thread is
+   * interrupted.
+   *
+   * @param deadline The time (in milliseconds) when the scan gives up.
+   * @return True when the file has a focused test.
+   * @throws CancellationException When the scan stopped before finding a focused test.
+   */
+  static boolean hasFocusedTests(CharSequence text, long deadline) {
+    final boolean[] found = new boolean[1];
+    JasmineScanner scanner = new JasmineScanner(text);
+    scanner.setCancellationCheck(STOP_WHEN_INTERRUPTED);
+    scanner.setDeadline(deadline);
+    boolean scanned = scanner.scan(new JasmineScanner.MatchListener() {
+      @Override
+      public void matchFound(JasmineScanner.Match match) {
+        if (match.getTestState() == TestState.Included) {
+          found[0] = true;
+        }
+      }
+    });
+    if (!scanned && !found[0]) {
+      throw new CancellationException("The file was not scanned in time");
+    }
+    return found[0];
+  }
+}
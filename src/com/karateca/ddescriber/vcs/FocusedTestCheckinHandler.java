@@ -0,0 +1,132 @@
+package com.karateca.ddescriber.vcs;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.vcs.CheckinProjectPanel;
+import com.intellij.openapi.vcs.checkin.CheckinHandler;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.karateca.ddescriber.ActionUtil;
+import com.karateca.ddescriber.model.JasmineFile;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Warns before committing files with an fdescribe, ddescribe, fit or iit. A focused test makes
+ * the test runner skip every other test.
+ */
+public class FocusedTestCheckinHandler extends CheckinHandler {
+  // The number of files listed in the warning.
+  private static final int MAX_LISTED_FILES = 10;
+
+  private final CheckinProjectPanel panel;
+
+  public FocusedTestCheckinHandler(CheckinProjectPanel panel) {
+    this.panel = panel;
+  }
+
+  @Override
+  public ReturnResult beforeCheckin() {
+    Project project = panel.getProject();
+    FocusedFileFinder finder = new FocusedFileFinder(project);
+    List<VirtualFile> files =
+        finder.find(panel.getVirtualFiles(), FocusedFileFinder.DEFAULT_TIME_BUDGET);
+    if (files.isEmpty()) {
+      return ReturnResult.COMMIT;
+    }
+
+    int answer = Messages.showYesNoCancelDialog(project, getMessage(files, finder.isComplete()),
+        "Focused Jasmine Tests", "Clean and Commit", "Commit", "Cancel",
+        Messages.getWarningIcon());
+
+    if (answer == Messages.YES) {
+      return cleanFiles(project, files) ? ReturnResult.COMMIT : ReturnResult.CANCEL;
+    }
+    return answer == Messages.NO ? ReturnResult.COMMIT : ReturnResult.CANCEL;
+  }
+
+  private static String getMessage(List<VirtualFile> files, boolean complete) {
+    StringBuilder message = new StringBuilder("These files have an fdescribe, ddescribe, fit or iit:\n");
+    for (int i = 0; i < files.size() && i < MAX_LISTED_FILES; i++) {
+      message.append('\n').append(files.get(i).getPresentableUrl());
+    }
+    if (files.size() > MAX_LISTED_FILES) {
+      message.append("\nand ").append(files.size() - MAX_LISTED_FILES).append(" more");
+    }
+    if (!complete) {
+      message.append("\n\nSome files were not checked in time.");
+    }
+    message.append("\n\nClean and Commit removes all the fdescribe / ddescribe / xdescribe and ")
+        .append("fit / iit / xit from these files, like Clean file.");
+    return message.toString();
+  }
+
+  /**
+   * Find the tests of the files under a progress dialog, then clean the files in a single command
+   * and save them, so the commit has the changes.
+   *
+   * @return False when the user cancelled the search.
+   */
+  private static boolean cleanFiles(final Project project, final List<VirtualFile> files) {
+    final List<JasmineFile> jasmineFiles = new ArrayList<JasmineFile>();
+    Runnable findAllTests = new Runnable() {
+      @Override
+      public void run() {
+        for (VirtualFile file : files) {
+          ProgressManager.checkCanceled();
+          JasmineFile jasmineFile = findTests(project, file);
+          if (jasmineFile != null) {
+            jasmineFiles.add(jasmineFile);
+          }
+        }
+      }
+    };
+    if (!ProgressManager.getInstance().runProcessWithProgressSynchronously(findAllTests,
+        "Finding jasmine tests", true, project)) {
+      return false;
+    }
+
+    ActionUtil.runInsideCommand(project, "Clean jasmine tests", new Runnable() {
+      @Override
+      public void run() {
+        for (JasmineFile jasmineFile : jasmineFiles) {
+          // Skip the files that changed after they were parsed.
+          Document document = ActionUtil.getDocument(jasmineFile.getVirtualFile());
+          if (document != null &&
+              document.getModificationStamp() == jasmineFile.getModificationStamp()) {
+            jasmineFile.cleanFile();
+          }
+        }
+      }
+    });
+    FileDocumentManager.getInstance().saveAllDocuments();
+    return true;
+  }
+
+  /**
+   * @return The tests of a file, or null when the file has no document.
+   */
+  private static JasmineFile findTests(final Project project, final VirtualFile file) {
+    return ApplicationManager.getApplication().runReadAction(new Computable<JasmineFile>() {
+      @Override
+      public JasmineFile compute() {
+        if (!file.isValid() || ActionUtil.getDocument(file) == null) {
+          return null;
+        }
+        JasmineFile jasmineFile = new JasmineFile(project, file);
+        jasmineFile.buildHierarchySync(new Runnable() {
+          @Override
+          public void run() {
+            ProgressManager.checkCanceled();
+          }
+        });
+        return jasmineFile;
+      }
+    });
+  }
+}
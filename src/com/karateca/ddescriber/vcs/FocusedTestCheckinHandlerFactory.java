@@ -0,0 +1,20 @@
+package com.karateca.ddescriber.vcs;
+
+import com.intellij.openapi.vcs.CheckinProjectPanel;
+import com.intellij.openapi.vcs.changes.CommitContext;
+import com.intellij.openapi.vcs.checkin.CheckinHandler;
+import com.intellij.openapi.vcs.checkin.CheckinHandlerFactory;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Adds the focused test check to the commit dialog.
+ */
+public class FocusedTestCheckinHandlerFactory extends CheckinHandlerFactory {
+
+  @NotNull
+  @Override
+  public CheckinHandler createHandler(@NotNull CheckinProjectPanel panel,
+      @NotNull CommitContext commitContext) {
+    return new FocusedTestCheckinHandler(panel);
+  }
+}
@@ -0,0 +1,87 @@
+package com.karateca.ddescriber;
+
+import com.intellij.find.FindResult;
+import com.intellij.openapi.editor.event.DocumentAdapter;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.editor.ex.DocumentEx;
+import com.karateca.ddescriber.core.TestState;
+import com.karateca.ddescriber.model.JasmineFile;
+import com.karateca.ddescriber.model.TestFindResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class DocumentEditPlanTest extends BaseTestCase {
+
+  private static final int TEST_COUNT = 2000;
+
+  public void testShouldApplyFromTheBottomUp() {
+    // Given replacements added in any order.
+    DocumentEditPlan editPlan = new DocumentEditPlan();
+    editPlan.replace(10, 12, "a");
+    editPlan.replace(0, 2, "b");
+    editPlan.replace(5, 6, "c");
+
+    // When you get the replacements.
+    List<DocumentEditPlan.Replacement> replacements = editPlan.getReplacements();
+
+    // Then ensure they go from the bottom of the document up.
+    assertEquals(10, replacements.get(0).getStartOffset());
+    assertEquals(5, replacements.get(1).getStartOffset());
+    assertEquals(0, replacements.get(2).getStartOffset());
+  }
+
+  public void testShouldRejectOverlappingRanges() {
+    // Given two ranges that overlap.
+    DocumentEditPlan editPlan = new DocumentEditPlan();
+    editPlan.replace(0, 5, "a");
+    editPlan.replace(3, 8, "b");
+
+    // Then ensure the plan is rejected.
+    try {
+      editPlan.getReplacements();
+      fail("The ranges overlap");
+    } catch (IllegalArgumentException expected) {
+      // Expected.
+    }
+  }
+
+  public void testShouldChangeManyTestsInOneBulkUpdate() {
+    // Given a file with many tests.
+    StringBuilder text = new StringBuilder("describe('many tests', function () {\n");
+    for (int i = 0; i < TEST_COUNT; i++) {
+      text.append("  it('test ").append(i).append("', function () {\n  });\n");
+    }
+    text.append("});\n");
+    psiFile = myFixture.configureByText("manyTests.js", text.toString());
+    virtualFile = psiFile.getVirtualFile();
+    document = ActionUtil.getDocument(virtualFile);
+
+    jasmineFinder = new JasmineFinder(getProject(), document);
+    jasmineFinder.findAll();
+    List<TestFindResult> tests = new ArrayList<TestFindResult>();
+    for (FindResult findResult : jasmineFinder.getFindResults()) {
+      TestFindResult test = new TestFindResult(document, findResult);
+      test.setPendingChangeState(TestState.Included);
+      tests.add(test);
+    }
+
+    final boolean[] outsideBulkUpdate = new boolean[1];
+    document.addDocumentListener(new DocumentAdapter() {
+      @Override
+      public void documentChanged(DocumentEvent event) {
+        outsideBulkUpdate[0] |= !((DocumentEx) event.getDocument()).isInBulkUpdate();
+      }
+    }, getTestRootDisposable());
+
+    // When you include all of them.
+    ActionUtil.changeTestList(getProject(), document, tests, JasmineSyntax.Version2);
+
+    // Then ensure every test changed in a single bulk update.
+    assertFalse(outsideBulkUpdate[0]);
+    JasmineFile changed = new JasmineFile(getProject(), virtualFile);
+    changed.buildHierarchySync();
+    assertEquals(TEST_COUNT + 1, changed.getTestCounts().getIncludedCount());
+    assertTrue(document.getText().contains("  fit('test " + (TEST_COUNT - 1) + "'"));
+  }
+}
@@ -0,0 +1,152 @@
+package com.karateca.ddescriber.cli;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.BufferUnderflowException;
+import java.util.List;
+
+public class FindFocusedTestsTest extends TestCase {
+
+  private File root;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    root = File.createTempFile("specs", "");
+    assertTrue(root.delete());
+    assertTrue(root.mkdir());
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    delete(root);
+    super.tearDown();
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  private File write(String path, String text) throws IOException {
+    File file = new File(root, path);
+    file.getParentFile().mkdirs();
+    FileOutputStream stream = new FileOutputStream(file);
+    try {
+      stream.write(text.getBytes("UTF-8"));
+    } finally {
+      stream.close();
+    }
+    return file;
+  }
+
+  public void testShouldFindTheFocusedTests() throws Exception {
+    // Given spec files with focused and excluded tests.
+    write("a/one.js", "describe('\u00f1and\u00fa', function() {\n  fit('x', function() {\n  });\n});\n");
+    write("a/b/two.js", "fdescribe\n  ('y', function() {\n  xit('z', function() {\n  });\n});\n");
+    write("three.js", "ddescribe('a', function() {\n  iit('b', function() {});\n});\n");
+    write("clean.js", "describe('a', function() {\n  xit('b', function() {});\n});\n");
+
+    // When you check the directory.
+    List<FindFocusedTests.Finding> findings =
+        new FindFocusedTests(2).find(new String[]{root.getPath()});
+
+    // Then ensure every focused test is found with the line of its keyword.
+    assertEquals(4, findings.size());
+    assertEquals(new File(root, "a/b/two.js").getPath() + ":1: fdescribe",
+        findings.get(0).toString());
+    assertEquals(new File(root, "a/one.js").getPath() + ":2: fit", findings.get(1).toString());
+    assertEquals(new File(root, "three.js").getPath() + ":1: ddescribe",
+        findings.get(2).toString());
+    assertEquals(new File(root, "three.js").getPath() + ":2: iit", findings.get(3).toString());
+  }
+
+  public void testShouldFindTheFocusedTestsAfterAByteOrderMark() throws Exception {
+    // Given a file that starts with a UTF-8 byte order mark.
+    write("bom.js", "\ufefffdescribe('a', function() {\n  fit('b', function() {});\n});\n");
+
+    // When you check the directory.
+    List<FindFocusedTests.Finding> findings =
+        new FindFocusedTests(2).find(new String[]{root.getPath()});
+
+    // Then ensure the test in the first line is found.
+    assertEquals(2, findings.size());
+    assertEquals(new File(root, "bom.js").getPath() + ":1: fdescribe",
+        findings.get(0).toString());
+    assertEquals(new File(root, "bom.js").getPath() + ":2: fit", findings.get(1).toString());
+  }
+
+  public void testShouldSkipDependenciesAndOtherFiles() throws Exception {
+    // Given focused tests in the dependencies and in files that are not specs.
+    write("node_modules/lib/spec.js", "fit('a', function() {});\n");
+    write(".git/spec.js", "fit('a', function() {});\n");
+    write("notes.txt", "fit('a', function() {});\n");
+
+    // When you check the directory.
+    List<FindFocusedTests.Finding> findings =
+        new FindFocusedTests(2).find(new String[]{root.getPath()});
+
+    // Then ensure nothing is found.
+    assertEquals(0, findings.size());
+  }
+
+  public void testShouldReturnTheExitCode() throws Exception {
+    // Given a clean file and a focused one.
+    File clean = write("clean.js", "describe('a', function() {});\n");
+    File focused = write("focused.js", "fdescribe('a', function() {});\n");
+    PrintStream out = new PrintStream(new ByteArrayOutputStream());
+
+    // Then ensure the exit code tells if there are focused tests.
+    assertEquals(FindFocusedTests.EXIT_CLEAN,
+        FindFocusedTests.run(new String[]{clean.getPath()}, out, out));
+    assertEquals(FindFocusedTests.EXIT_FOCUSED,
+        FindFocusedTests.run(new String[]{clean.getPath(), focused.getPath()}, out, out));
+    assertEquals(FindFocusedTests.EXIT_ERROR,
+        FindFocusedTests.run(new String[]{new File(root, "missing").getPath()}, out, out));
+  }
+
+  public void testShouldFindTheFocusedTestsOfEveryExtension() throws Exception {
+    // Given focused tests in jsx and tsx files.
+    write("one.jsx", "fit('a', function() {});\n");
+    write("two.TSX", "fdescribe('a', function() {});\n");
+
+    // When you check the directory.
+    List<FindFocusedTests.Finding> findings =
+        new FindFocusedTests(2).find(new String[]{root.getPath()});
+
+    // Then ensure both are found.
+    assertEquals(2, findings.size());
+    assertEquals(new File(root, "one.jsx").getPath() + ":1: fit", findings.get(0).toString());
+    assertEquals(new File(root, "two.TSX").getPath() + ":1: fdescribe",
+        findings.get(1).toString());
+  }
+
+  public void testShouldReportTheFilesThatFailToScan() throws Exception {
+    // Given a file that fails with an unchecked exception, like a mapped file that is truncated.
+    File file = write("spec.js", "fit('a', function() {});\n");
+    FindFocusedTests check = new FindFocusedTests(2) {
+      @Override
+      void scan(String path, CharSequence text) {
+        throw new BufferUnderflowException();
+      }
+    };
+
+    // When you check the directory.
+    List<FindFocusedTests.Finding> findings = check.find(new String[]{root.getPath()});
+
+    // Then ensure the check ends and the file is an error.
+    assertEquals(0, findings.size());
+    assertEquals(1, check.getErrors().size());
+    assertTrue(check.getErrors().iterator().next().startsWith(file.getPath() + ": "));
+  }
+}
@@ -0,0 +1,49 @@
+package com.karateca.ddescriber.core;
+
+import junit.framework.TestCase;
+
+public class EditPlanTest extends TestCase {
+
+  public void testShouldApplyToText() {
+    // Given a plan that cleans two tests.
+    String text = "fdescribe('a', function() {\n  xit('b', function() {\n  });\n});\n";
+    EditPlan editPlan = new EditPlan();
+    editPlan.replace(text.indexOf("xit("), text.indexOf("xit(") + 4, "it(");
+    editPlan.replace(0, 10, "describe(");
+
+    // When you apply the plan.
+    String result = editPlan.apply(text);
+
+    // Then ensure both replacements are made.
+    assertEquals("describe('a', function() {\n  it('b', function() {\n  });\n});\n", result);
+  }
+
+  public void testShouldRejectRangesPastTheEnd() {
+    // Given a replacement past the end of the text.
+    EditPlan editPlan = new EditPlan();
+    editPlan.replace(2, 20, "a");
+
+    // Then ensure the plan is rejected.
+    try {
+      editPlan.apply("short");
+      fail("The replacement is past the end of the text");
+    } catch (IllegalArgumentException expected) {
+      // Expected.
+    }
+  }
+
+  public void testShouldRejectOverlappingRanges() {
+    // Given two ranges that overlap.
+    EditPlan editPlan = new EditPlan();
+    editPlan.replace(0, 5, "a");
+    editPlan.replace(3, 8, "b");
+
+    // Then ensure the plan is rejected.
+    try {
+      editPlan.apply("0123456789");
+      fail("The ranges overlap");
+    } catch (IllegalArgumentException expected) {
+      // Expected.
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package com.karateca.ddescriber.core;
+
+import junit.framework.TestCase;
+
+public class JasmineScannerTest extends TestCase {
+
+  public void testShouldCheckForCancellationInALongLine() {
+    // Given a minified file, a single line with many tests.
+    StringBuilder builder = new StringBuilder("describe('a', function () {");
+    while (builder.length() < 1024 * 1024) {
+      builder.append("it('b', function () { var c = 'd' + `e` + /f/.source; /* g */ });");
+    }
+    String text = builder.append("});").toString();
+
+    // When you scan it.
+    final int[] checkCount = {0};
+    JasmineScanner scanner = new JasmineScanner(text);
+    scanner.setCancellationCheck(new Runnable() {
+      @Override
+      public void run() {
+        checkCount[0]++;
+      }
+    });
+    final int[] matchCount = {0};
+    boolean complete = scanner.scan(new JasmineScanner.MatchListener() {
+      @Override
+      public void matchFound(JasmineScanner.Match match) {
+        matchCount[0]++;
+      }
+    });
+
+    // Then ensure the line is checked while it is scanned, and only the first test is found.
+    assertTrue(complete);
+    assertEquals(1, matchCount[0]);
+    assertTrue(checkCount[0] >= text.length() / (64 * 1024));
+  }
+
+  public void testShouldGoOnUntilTheLinesStartInCode() {
+    // Given a comment that starts in the first line and a test after it.
+    String text = "/* start\n" +
+        "it('a', function () {});\n" +
+        "end */\n" +
+        "it('b', function () {});\n";
+
+    // When you scan the first line, with a condition that lets the scan stop anywhere.
+    JasmineScanner scanner = new JasmineScanner(text);
+    scanner.setStopCondition(new JasmineScanner.StopCondition() {
+      @Override
+      public boolean canStopAt(int lineStart) {
+        return true;
+      }
+    });
+    final int[] matchCount = {0};
+    scanner.scan(0, 0, 0, new JasmineScanner.MatchListener() {
+      @Override
+      public void matchFound(JasmineScanner.Match match) {
+        matchCount[0]++;
+      }
+    });
+
+    // Then ensure the scan stops after the comment, before the test.
+    assertEquals(text.indexOf("it('b'"), scanner.getStopOffset());
+    assertEquals(0, matchCount[0]);
+  }
+}
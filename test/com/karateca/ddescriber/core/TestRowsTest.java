@@ -0,0 +1,159 @@
+package com.karateca.ddescriber.core;
+
+import junit.framework.TestCase;
+
+/**
+ * Runs without the IDE, the rows are read straight from the text.
+ */
+public class TestRowsTest extends TestCase {
+
+  private static final String SPEC = "" +
+      "describe('desc1', function () {\n" +
+      "    it('it1', function () {\n" +
+      "    });\n" +
+      "\n" +
+      "    fdescribe('desc1.1', function () {\n" +
+      "        xit(\"it2\", function () {\n" +
+      "        });\n" +
+      "    });\n" +
+      "});\n" +
+      "\n" +
+      "describe('desc2', function () {\n" +
+      "    iit('it3' + name, function () {\n" +
+      "    });\n" +
+      "});\n";
+
+  public void testShouldParseTheTests() {
+    // When you parse a text.
+    TestRows rows = TestRows.parse(SPEC);
+
+    // Then ensure all the tests are found in document order.
+    assertEquals(6, rows.size());
+    assertEquals("desc1", rows.getTestText(0));
+    assertEquals("it1", rows.getTestText(1));
+    assertEquals("desc1.1", rows.getTestText(2));
+    assertEquals("it2", rows.getTestText(3));
+    assertEquals("desc2", rows.getTestText(4));
+    assertEquals("it3", rows.getTestText(5));
+
+    // Then ensure the line numbers start at one.
+    assertEquals(1, rows.getLineNumber(0));
+    assertEquals(5, rows.getLineNumber(2));
+    assertEquals(12, rows.getLineNumber(5));
+  }
+
+  public void testShouldShareTheNamesOfATable() {
+    // Given two tests with the same name.
+    TestRows rows = TestRows.parse("describe('a', function () {\n" +
+        "  it('same', function () {});\n" +
+        "});\n" +
+        "describe('b', function () {\n" +
+        "  it('same', function () {});\n" +
+        "});\n");
+
+    // Then ensure they share the name.
+    assertEquals("same", rows.getTestText(1));
+    assertSame(rows.getTestText(1), rows.getTestText(3));
+  }
+
+  public void testShouldFindTheStates() {
+    // When you parse a text.
+    TestRows rows = TestRows.parse(SPEC);
+
+    // Then ensure the states and the counts match the prefixes.
+    assertEquals(TestState.NotModified, rows.getTestState(0));
+    assertEquals(TestState.Included, rows.getTestState(2));
+    assertEquals(TestState.Excluded, rows.getTestState(3));
+    assertEquals(TestState.Included, rows.getTestState(5));
+    assertTrue(rows.isDescribe(2));
+    assertFalse(rows.isDescribe(3));
+    assertEquals(2, rows.getCount(TestState.Included));
+    assertEquals(1, rows.getCount(TestState.Excluded, false));
+    assertEquals(0, rows.getCount(TestState.Excluded, true));
+  }
+
+  public void testShouldFindTheParents() {
+    // When you parse a text.
+    TestRows rows = TestRows.parse(SPEC);
+
+    // Then ensure every test is under its suite.
+    assertEquals(TestRows.NO_PARENT, rows.getParent(0));
+    assertEquals(0, rows.getParent(1));
+    assertEquals(0, rows.getParent(2));
+    assertEquals(2, rows.getParent(3));
+    assertEquals(TestRows.NO_PARENT, rows.getParent(4));
+    assertEquals(4, rows.getParent(5));
+
+    // Then ensure the children are grouped by parent.
+    assertEquals(2, rows.getChildCount(TestRows.NO_PARENT));
+    assertEquals(4, rows.getChild(TestRows.NO_PARENT, 1));
+    assertEquals(1, rows.getIndexOfChild(0, 2));
+    assertEquals(-1, rows.getIndexOfChild(0, 3));
+  }
+
+  public void testShouldReplaceTheEditedRows() {
+    // Given the tests of a text.
+    TestRows rows = TestRows.parse(SPEC);
+
+    // When the second test is renamed and its line moves the rest of the text.
+    String oldLine = "    it('it1', function () {\n";
+    String newLine = "    fit('renamed', function () {\n\n";
+    String text = SPEC.replace(oldLine, newLine);
+    int lineStart = SPEC.indexOf(oldLine);
+    TestRows newRows = new TestRows(text, 1);
+    newRows.add(text.indexOf("(", lineStart) + 1, 1);
+    rows.replace(1, 2, newRows, newLine.length() - oldLine.length(), 1);
+
+    // Then ensure the table is the same as parsing the new text.
+    TestRows parsed = TestRows.parse(text);
+    assertEquals(parsed.size(), rows.size());
+    for (int i = 0; i < parsed.size(); i++) {
+      assertEquals(parsed.getTestText(i), rows.getTestText(i));
+      assertEquals(parsed.getStartOffset(i), rows.getStartOffset(i));
+      assertEquals(parsed.getEndOffset(i), rows.getEndOffset(i));
+      assertEquals(parsed.getLineNumber(i), rows.getLineNumber(i));
+      assertEquals(parsed.getParent(i), rows.getParent(i));
+      assertEquals(parsed.getTestState(i), rows.getTestState(i));
+    }
+    assertEquals(3, rows.getCount(TestState.Included));
+  }
+
+  public void testShouldSkipTheLinesInCommentsAndStrings() {
+    // Given tests in comments, template literals and continued strings.
+    String text = "" +
+        "describe('desc1', function () {\n" +
+        "  /*\n" +
+        "  it('in a comment', function () {});\n" +
+        "  */\n" +
+        "  var html = `\n" +
+        "  it('in a template', function () {});\n" +
+        "  ${name}`;\n" +
+        "  var text = 'continued \\\n" +
+        "  it(\"in a string\", function () {});';\n" +
+        "  var pattern = /`/;\n" +
+        "  it('it1', function () {});\n" +
+        "});\n";
+
+    // When you parse the text.
+    TestRows rows = TestRows.parse(text);
+
+    // Then ensure only the tests in code are found.
+    assertEquals(2, rows.size());
+    assertEquals("desc1", rows.getTestText(0));
+    assertEquals("it1", rows.getTestText(1));
+    assertEquals(11, rows.getLineNumber(1));
+  }
+
+  public void testShouldReadTheNameFromTheString() {
+    // When you parse tests with escapes in their names.
+    TestRows rows = TestRows.parse("" +
+        "it('it\\'s', function () {});\n" +
+        "it(\"tab\\tand \\u0041\", function () {});\n" +
+        "it('a' + name, function () {});\n");
+
+    // Then ensure the names are the values of the strings.
+    assertEquals("it's", rows.getTestText(0));
+    assertEquals("tab\tand A", rows.getTestText(1));
+    assertEquals("a", rows.getTestText(2));
+  }
+}
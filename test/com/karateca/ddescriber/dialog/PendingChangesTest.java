@@ -1,44 +1,50 @@
 package com.karateca.ddescriber.dialog;
 
-import com.intellij.find.impl.FindResultImpl;
-import com.intellij.mock.MockDocument;
+import com.karateca.ddescriber.BaseTestCase;
+import com.karateca.ddescriber.core.TestState;
+import com.karateca.ddescriber.model.JasmineFile;
 import com.karateca.ddescriber.model.TestFindResult;
-import com.karateca.ddescriber.model.TestState;
-import junit.framework.TestCase;
 
+import java.util.BitSet;
 import java.util.List;
 
 /**
  * @author Andres Dominguez.
  */
-public class PendingChangesTest extends TestCase {
+public class PendingChangesTest extends BaseTestCase {
 
   private PendingChanges pendingChanges;
+  private List<TestFindResult> tests;
 
   public void setUp() throws Exception {
-    pendingChanges = new PendingChanges();
+    super.setUp();
+    prepareScenarioWithTestFile("testWihManyLevels.js");
+    JasmineFile jasmineFile = new JasmineFile(getProject(), virtualFile);
+    jasmineFile.buildHierarchySync();
+    tests = jasmineFile.getAllTests();
+    pendingChanges = new PendingChanges(tests);
   }
 
   public void testShouldSortTestsToChange() throws Exception {
-    pendingChanges.itemChanged(createPendingChange(10), TestState.Excluded);
-    pendingChanges.itemChanged(createPendingChange(30), TestState.Excluded);
+    pendingChanges.itemChanged(tests.get(1), TestState.Excluded);
+    pendingChanges.itemChanged(tests.get(3), TestState.Excluded);
 
-    pendingChanges.itemChanged(createPendingChange(20), TestState.Excluded);
-    pendingChanges.itemChanged(createPendingChange(40), TestState.Excluded);
+    pendingChanges.itemChanged(tests.get(2), TestState.Excluded);
+    pendingChanges.itemChanged(tests.get(4), TestState.Excluded);
 
     List<TestFindResult> testsToChange = pendingChanges.getTestsToChange();
 
     assertEquals(4, testsToChange.size());
-    assertEquals(10, testsToChange.get(0).getStartOffset());
-    assertEquals(20, testsToChange.get(1).getStartOffset());
-    assertEquals(30, testsToChange.get(2).getStartOffset());
-    assertEquals(40, testsToChange.get(3).getStartOffset());
+    assertEquals(tests.get(1).getStartOffset(), testsToChange.get(0).getStartOffset());
+    assertEquals(tests.get(2).getStartOffset(), testsToChange.get(1).getStartOffset());
+    assertEquals(tests.get(3).getStartOffset(), testsToChange.get(2).getStartOffset());
+    assertEquals(tests.get(4).getStartOffset(), testsToChange.get(3).getStartOffset());
   }
 
   public void testShouldAddItems() {
     // When you add two items.
-    pendingChanges.itemChanged(getTestFindResult(TestState.Included), TestState.Excluded);
-    pendingChanges.itemChanged(getTestFindResult(TestState.Excluded), TestState.Included);
+    pendingChanges.itemChanged(getTestFindResult(0, TestState.Included), TestState.Excluded);
+    pendingChanges.itemChanged(getTestFindResult(1, TestState.Excluded), TestState.Included);
 
     // Then ensure there are two items.
     assertEquals(2, pendingChanges.getTestsToChange().size());
@@ -46,9 +52,9 @@ public class PendingChangesTest extends TestCase {
 
   public void testShouldRemoveTestThatDidNotChangeStatus() {
     // Given that you add three items.
-    TestFindResult included = getTestFindResult(TestState.Included);
-    TestFindResult excluded = getTestFindResult(TestState.Excluded);
-    TestFindResult notModified = getTestFindResult(TestState.NotModified);
+    TestFindResult included = getTestFindResult(0, TestState.Included);
+    TestFindResult excluded = getTestFindResult(1, TestState.Excluded);
+    TestFindResult notModified = getTestFindResult(2, TestState.NotModified);
 
     pendingChanges.itemChanged(included, TestState.Excluded);
     pendingChanges.itemChanged(excluded, TestState.Included);
@@ -65,7 +71,7 @@ public class PendingChangesTest extends TestCase {
 
   public void testShouldRollbackOriginalState() {
     // Given an excluded test.
-    TestFindResult excluded = getTestFindResult(TestState.Excluded);
+    TestFindResult excluded = getTestFindResult(0, TestState.Excluded);
 
     // When you exclude it.
     pendingChanges.itemChanged(excluded, TestState.Excluded);
@@ -83,7 +89,7 @@ public class PendingChangesTest extends TestCase {
   }
 
   public void testChangingNotModifiedTestShouldRevertToOriginal() {
-    TestFindResult notModified = getTestFindResult(TestState.NotModified);
+    TestFindResult notModified = getTestFindResult(0, TestState.NotModified);
 
     pendingChanges.itemChanged(notModified, TestState.Included);
     pendingChanges.itemChanged(notModified, TestState.Included);
@@ -92,21 +98,45 @@ public class PendingChangesTest extends TestCase {
     assertEquals(0, pendingChanges.getTestsToChange().size());
   }
 
-  private TestFindResult getTestFindResult(TestState testState) {
-    TestFindResult pendingChange = createPendingChange(1);
-    pendingChange.setTestState(testState);
-    return pendingChange;
+  public void testShouldChangeManyItemsAtOnce() {
+    // Given a range of selected tests.
+    BitSet selected = new BitSet();
+    selected.set(2, 8);
+
+    // When you exclude all of them.
+    pendingChanges.itemsChanged(selected, TestState.Excluded);
+
+    // Then ensure all of them are pending, in document order.
+    List<TestFindResult> testsToChange = pendingChanges.getTestsToChange();
+    assertEquals(6, testsToChange.size());
+    for (int i = 0; i < testsToChange.size(); i++) {
+      assertSame(tests.get(i + 2), testsToChange.get(i));
+      assertEquals(TestState.Excluded, testsToChange.get(i).getPendingChangeState());
+    }
+  }
+
+  public void testShouldRevertManyItemsAtOnce() {
+    // Given a range of tests that were excluded, and one of them was included alone.
+    BitSet selected = new BitSet();
+    selected.set(2, 8);
+    pendingChanges.itemsChanged(selected, TestState.Excluded);
+    pendingChanges.itemChanged(tests.get(9), TestState.Included);
+
+    // When you exclude the range again.
+    pendingChanges.itemsChanged(selected, TestState.Excluded);
+
+    // Then ensure only the test outside of the range is pending.
+    for (int i = 2; i < 8; i++) {
+      assertNull(tests.get(i).getPendingChangeState());
+    }
+    List<TestFindResult> testsToChange = pendingChanges.getTestsToChange();
+    assertEquals(1, testsToChange.size());
+    assertSame(tests.get(9), testsToChange.get(0));
   }
 
-  private TestFindResult createPendingChange(final int startOffset) {
-    FindResultImpl findResult = new FindResultImpl(startOffset, startOffset + 10);
-    TestFindResult testFindResult = new TestFindResult(new MockDocument(""), findResult) {
-      @Override
-      public int getStartOffset() {
-        return startOffset;
-      }
-    };
-    testFindResult.setTestState(TestState.NotModified);
+  private TestFindResult getTestFindResult(int index, TestState testState) {
+    TestFindResult testFindResult = tests.get(index);
+    testFindResult.setTestState(testState);
     return testFindResult;
   }
 }
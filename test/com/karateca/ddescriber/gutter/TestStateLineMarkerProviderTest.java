@@ -0,0 +1,80 @@
+package com.karateca.ddescriber.gutter;
+
+import com.karateca.ddescriber.BaseTestCase;
+import com.karateca.ddescriber.JasmineSyntax;
+import com.karateca.ddescriber.core.TestState;
+import com.karateca.ddescriber.model.JasmineFile;
+import com.karateca.ddescriber.model.JasmineFileCache;
+
+public class TestStateLineMarkerProviderTest extends BaseTestCase {
+
+  public void testShouldCycleThroughTheStates() {
+    assertEquals(TestState.Included, TestStateLineMarkerProvider.getNextState(TestState.NotModified));
+    assertEquals(TestState.Excluded, TestStateLineMarkerProvider.getNextState(TestState.Included));
+    assertEquals(TestState.NotModified, TestStateLineMarkerProvider.getNextState(TestState.Excluded));
+  }
+
+  public void testShouldToggleTheTestOnClick() {
+    // Given a file with a nested it().
+    prepareScenarioWithTestFile("doubleDescribe.js");
+    int offset = document.getText().indexOf("it('it2'");
+
+    // When you click the icon of the test.
+    toggleTest(offset);
+
+    // Then ensure it is included.
+    assertTrue(document.getText().startsWith("fit('it2'", offset));
+
+    // When you click two more times.
+    toggleTest(offset);
+    assertTrue(document.getText().startsWith("xit('it2'", offset));
+    toggleTest(offset);
+
+    // Then ensure the test is back to the original.
+    assertTrue(document.getText().startsWith("it('it2'", offset));
+  }
+
+  public void testShouldIncludeWithTheGivenSyntax() {
+    // Given a file with a nested it().
+    prepareScenarioWithTestFile("doubleDescribe.js");
+    int offset = document.getText().indexOf("it('it2'");
+
+    // When you click the icon with the Jasmine 1 syntax.
+    TestStateLineMarkerProvider.toggleTest(getProject(), virtualFile, offset,
+        JasmineSyntax.Version1);
+
+    // Then ensure it is included with iit().
+    assertTrue(document.getText().startsWith("iit('it2'", offset));
+  }
+
+  public void testShouldNotAddTheFileToTheCache() {
+    // Given a file that is not in the cache.
+    prepareScenarioWithTestFile("doubleDescribe.js");
+    JasmineFileCache cache = JasmineFileCache.getInstance(getProject());
+    int size = cache.size();
+
+    // When you find its tests for the gutter.
+    JasmineFile jasmineFile = TestStateLineMarkerProvider.findTests(getProject(), virtualFile);
+
+    // Then ensure the tests are found without caching the file.
+    assertFalse(jasmineFile.getAllTests().isEmpty());
+    assertEquals(size, cache.size());
+  }
+
+  public void testShouldIgnoreOffsetsWithoutTests() {
+    // Given a file with tests.
+    prepareScenarioWithTestFile("doubleDescribe.js");
+    String text = document.getText();
+
+    // When you toggle an offset that is not the start of a test.
+    toggleTest(3);
+
+    // Then ensure nothing changes.
+    assertEquals(text, document.getText());
+  }
+
+  private void toggleTest(int offset) {
+    TestStateLineMarkerProvider.toggleTest(getProject(), virtualFile, offset,
+        JasmineSyntax.Version2);
+  }
+}
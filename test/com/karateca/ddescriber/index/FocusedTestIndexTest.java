@@ -0,0 +1,47 @@
+package com.karateca.ddescriber.index;
+
+import com.karateca.ddescriber.BaseTestCase;
+import com.karateca.ddescriber.core.TestState;
+
+import java.util.Map;
+
+public class FocusedTestIndexTest extends BaseTestCase {
+
+  public void testShouldFindFilesWithFocusedTests() {
+    // Given a file with an fdescribe() and an fit().
+    prepareScenarioWithTestFile("jasmine2/jasmineTestBefore.js");
+
+    // When you look for files with focused tests.
+    // Then ensure the file is found.
+    assertTrue(FocusedTestIndex.getFilesWithFocusedTests(getProject()).contains(virtualFile));
+  }
+
+  public void testShouldNotFindCleanFiles() {
+    // Given a file without focused tests.
+    prepareScenarioWithTestFile("doubleDescribe.js");
+
+    // Then ensure the file is not found.
+    assertFalse(FocusedTestIndex.getFilesWithFocusedTests(getProject()).contains(virtualFile));
+  }
+
+  public void testShouldIndexTestOffsets() {
+    // Given a file with included and excluded tests.
+    prepareScenarioWithTestFile("jasmine2/jasmineTestBefore.js");
+
+    // When you get the offsets of the included tests.
+    int[] offsets = FocusedTestIndex.getTestOffsets(getProject(), virtualFile, TestState.Included);
+
+    // Then ensure they point to the fdescribe() and the fit().
+    assertEquals(2, offsets.length);
+    assertTrue(document.getText().startsWith("fdescribe(", offsets[0]));
+    assertTrue(document.getText().startsWith("fit(", offsets[1]));
+  }
+
+  public void testShouldSkipNotModifiedTests() {
+    Map<TestState, int[]> index = FocusedTestIndex.indexText(
+        "describe('a', function () {\n  it('b', function () {});\n  xit('c');\n});");
+
+    assertEquals(1, index.size());
+    assertEquals(1, index.get(TestState.Excluded).length);
+  }
+}
@@ -1,6 +1,7 @@
 package com.karateca.ddescriber.model;
 
 import com.karateca.ddescriber.BaseTestCase;
+import com.karateca.ddescriber.core.TestState;
 
 import java.util.List;
 
@@ -30,6 +31,27 @@ public class HierarchyTest extends BaseTestCase {
     assertEquals("inner it 2", closest.getTestText());
   }
 
+  public void testShouldFindTheClosestTestForEveryLine() {
+    // Given a file with many tests.
+    Hierarchy hierarchy = getHierarchyForTestFile("testWihManyLevels.js");
+    List<TestFindResult> tests = hierarchy.getAllUnitTests();
+
+    for (int line = 0; line < document.getLineCount(); line++) {
+      // When you find the closest test from the line.
+      TestFindResult closest = hierarchy.getClosestTestFromCaret(document.getLineStartOffset(line));
+
+      // Then ensure it is the first test with the shortest distance.
+      TestFindResult expected = null;
+      for (TestFindResult test : tests) {
+        if (expected == null ||
+            Math.abs(line + 1 - test.getLineNumber()) < Math.abs(line + 1 - expected.getLineNumber())) {
+          expected = test;
+        }
+      }
+      assertSame(expected, closest);
+    }
+  }
+
   public void testGetMarkedElementsJasmine1() {
     getMarkedElements("jasmine1/jasmineTestCaretTop.js");
     getMarkedElements("jasmine2/jasmineTestCaretTop.js");
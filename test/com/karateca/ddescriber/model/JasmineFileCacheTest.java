@@ -0,0 +1,67 @@
+package com.karateca.ddescriber.model;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.karateca.ddescriber.BaseTestCase;
+
+public class JasmineFileCacheTest extends BaseTestCase {
+
+  private JasmineFileCache cache;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    cache = new JasmineFileCache(getProject(), 1);
+  }
+
+  public void testShouldServeUnchangedFileFromCache() {
+    // Given a file that was parsed.
+    prepareScenarioWithTestFile("testWihManyLevels.js");
+    JasmineFile first = cache.getJasmineFile(virtualFile);
+
+    // When you get it again.
+    JasmineFile second = cache.getJasmineFile(virtualFile);
+
+    // Then ensure it comes from the cache.
+    assertSame(first, second);
+    assertEquals(1, cache.getMissCount());
+    assertEquals(1, cache.getHitCount());
+
+    // And ensure only the tests were found, without the tree nodes.
+    assertFalse(second.hasTreeNode());
+    assertFalse(second.getAllTests().isEmpty());
+  }
+
+  public void testShouldKeepCachedFileUpToDate() {
+    // Given a file that was parsed.
+    prepareScenarioWithTestFile("testWihManyLevels.js");
+    JasmineFile first = cache.getJasmineFile(virtualFile);
+
+    // When you add a test at the top.
+    WriteCommandAction.runWriteCommandAction(getProject(), new Runnable() {
+      @Override
+      public void run() {
+        document.insertString(0, "it('new test', function () {});\n");
+      }
+    });
+
+    // Then ensure the cached file was updated.
+    JasmineFile second = cache.getJasmineFile(virtualFile);
+    assertSame(first, second);
+    assertEquals(1, cache.getHitCount());
+    assertEquals("new test", second.getAllTests().get(0).getTestText());
+  }
+
+  public void testShouldEvictLeastRecentlyUsed() {
+    // Given a cache with room for one file.
+    prepareScenarioWithTestFile("testWihManyLevels.js");
+    cache.getJasmineFile(virtualFile);
+
+    // When you add another file.
+    prepareScenarioWithTestFile("doubleDescribe.js");
+    cache.getJasmineFile(virtualFile);
+
+    // Then ensure the first file was evicted.
+    assertEquals(1, cache.size());
+    assertEquals(1, cache.getEvictionCount());
+  }
+}
@@ -1,10 +1,15 @@
 package com.karateca.ddescriber.model;
 
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.util.DocumentUtil;
+import com.intellij.util.ui.UIUtil;
 import com.karateca.ddescriber.BaseTestCase;
+import com.karateca.ddescriber.core.TestState;
 
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 import java.util.List;
+import java.util.Random;
 
 public class JasmineFileTest extends BaseTestCase {
 
@@ -66,6 +71,19 @@ public class JasmineFileTest extends BaseTestCase {
     assertEquals(2, root.getChildCount());
   }
 
+  public void testShouldFindTheTestAtAnOffset() {
+    buildRootNodeFromFile("doubleDescribe.js");
+    String text = document.getText();
+
+    // Ensure the test is found by the offset of its it().
+    assertEquals("it2", jasmineFile.getTestAt(text.indexOf("it('it2'")).getTestText());
+    assertEquals("desc1", jasmineFile.getTestAt(0).getTestText());
+
+    // Ensure other offsets have no test.
+    assertNull(jasmineFile.getTestAt(1));
+    assertNull(jasmineFile.getTestAt(text.length()));
+  }
+
   public void testGetClosestTest() {
     buildRootNodeFromFile("testWihManyLevels.js");
 
@@ -99,39 +117,43 @@ public class JasmineFileTest extends BaseTestCase {
     assertEquals(4, root.getChildCount());
   }
 
-  public void testTreeCopy() throws Exception {
-    copiesTree("jasmine1/jasmineTestCaretTop.js");
-    copiesTree("jasmine2/jasmineTestCaretTop.js");
-  }
-
-  private void copiesTree(String fileName) {
-    buildRootNodeFromFile(fileName);
-
-    // Given that you have a tree to copy and a destination.
-    TreeNode destination = new TreeNode("destRoot");
-    TreeNode source = new TreeNode("source");
-    TreeNode parent1 = new TreeNode("parent 1");
-    parent1.add(new TreeNode("foo"));
-    parent1.add(new TreeNode("bar"));
-    source.add(parent1);
-    source.add(new TreeNode("Level 1, ch1"));
-
-    // When you do the deep copy.
-    jasmineFile.copyTree(source, destination);
-
-    // Then ensure the destination has the same structure.
-    assertEquals("source", destination.getUserObject());
-    assertEquals(2, destination.getChildCount());
-    TreeNode firstChild = (TreeNode) destination.getFirstChild();
-
-    // Test first level.
-    assertEquals("parent 1", firstChild.getUserObject());
-    assertEquals("Level 1, ch1", ((TreeNode) destination.getLastChild()).getUserObject());
+  public void testSnapshotSharesUnchangedSubtrees() {
+    // Given a snapshot of a file that is updated incrementally.
+    buildRootNodeFromFile("testWihManyLevels.js");
+    jasmineFile.enableIncrementalUpdates(getTestRootDisposable());
+    TestTreeSnapshot before = jasmineFile.getSnapshot();
+    TestTreeSnapshot.Node suite1Before = before.getRoot().getChildren().get(0);
 
-    // Test second level.
-    assertEquals(2, firstChild.getChildCount());
-    assertEquals("foo", ((TreeNode) firstChild.getFirstChild()).getUserObject());
-    assertEquals("bar", ((TreeNode) firstChild.getLastChild()).getUserObject());
+    // When you add a test before suite6.
+    final int offset = document.getText().indexOf("    describe('suite6'");
+    WriteCommandAction.runWriteCommandAction(getProject(), new Runnable() {
+      @Override
+      public void run() {
+        document.insertString(offset, "    it('new test', function () {});\n");
+      }
+    });
+    TestTreeSnapshot after = jasmineFile.getSnapshot();
+    TestTreeSnapshot.Node suite1After = after.getRoot().getChildren().get(0);
+
+    // Then ensure the old snapshot did not change.
+    assertEquals(16, before.size());
+    assertEquals(4, suite1Before.getChildren().size());
+
+    // And ensure the new snapshot has the new test.
+    assertEquals(17, after.size());
+    assertEquals(5, suite1After.getChildren().size());
+    assertEquals("new test", suite1After.getChildren().get(3).getName());
+
+    // And ensure the suites above the edit are shared.
+    assertSame(suite1Before.getChildren().get(1), suite1After.getChildren().get(1));
+    assertSame(suite1Before.getChildren().get(2), suite1After.getChildren().get(2));
+
+    // And ensure the suite below the edit moved one line but shares its tests.
+    TestTreeSnapshot.Node suite6Before = suite1Before.getChildren().get(3);
+    TestTreeSnapshot.Node suite6After = suite1After.getChildren().get(4);
+    int suite1Line = suite1After.getLineNumber(0);
+    assertEquals(suite6Before.getLineNumber(suite1Line) + 1, suite6After.getLineNumber(suite1Line));
+    assertSame(suite6Before.getChildren().get(0), suite6After.getChildren().get(0));
   }
 
   public void testSearchResultsListener() {
@@ -150,12 +172,65 @@ public class JasmineFileTest extends BaseTestCase {
 
     // When you process the files.
     jasmineFile.buildTreeNodeAsync();
+    waitForBuild(buildDone);
 
     // Then ensure the change event was broadcasted.
     assertTrue(buildDone[0]);
+    assertTrue(jasmineFile.isComplete());
     assertEquals("top describe", jasmineFile.getTreeNode().getNodeValue().getTestText());
   }
 
+  public void testCancelBuild() {
+    // Given a jasmine file that is being processed.
+    prepareScenarioWithTestFile("jasmine1/jasmineTestCaretTop.js");
+    jasmineFile = new JasmineFile(getProject(), virtualFile);
+    final boolean[] buildDone = new boolean[1];
+    jasmineFile.addResultsReadyListener(new ChangeListener() {
+      @Override
+      public void stateChanged(ChangeEvent changeEvent) {
+        buildDone[0] = true;
+      }
+    });
+    jasmineFile.buildTreeNodeAsync();
+
+    // When you cancel the build.
+    jasmineFile.cancelBuild();
+    waitForBuild(buildDone);
+
+    // Then ensure the listener was not notified.
+    assertFalse(jasmineFile.isBuilding());
+    assertFalse(buildDone[0]);
+  }
+
+  public void testPartialResultsWhenOutOfTime() {
+    // Given a jasmine file without time to find the tests.
+    prepareScenarioWithTestFile("jasmine1/jasmineTestCaretTop.js");
+    jasmineFile = new JasmineFile(getProject(), virtualFile);
+    jasmineFile.setTimeBudget(0);
+    final boolean[] buildDone = new boolean[1];
+    jasmineFile.addResultsReadyListener(new ChangeListener() {
+      @Override
+      public void stateChanged(ChangeEvent changeEvent) {
+        buildDone[0] = true;
+      }
+    });
+
+    // When you process the file.
+    jasmineFile.buildTreeNodeAsync();
+    waitForBuild(buildDone);
+
+    // Then ensure the results are marked as partial.
+    assertTrue(buildDone[0]);
+    assertFalse(jasmineFile.isComplete());
+  }
+
+  private void waitForBuild(boolean[] buildDone) {
+    long timeout = System.currentTimeMillis() + 10000;
+    while (!buildDone[0] && jasmineFile.isBuilding() && System.currentTimeMillis() < timeout) {
+      UIUtil.dispatchAllInvocationEvents();
+    }
+  }
+
   public void testCleanFile() {
     // Given a jasmine file with a ddescribe() and an iit().
     shouldCleanFile("jasmine1/jasmineTestBefore.js");
@@ -177,6 +252,30 @@ public class JasmineFileTest extends BaseTestCase {
     myFixture.checkResultByFile("jasmineTestAfter.js");
   }
 
+  public void testShouldCleanFileIgnoringThePendingChanges() {
+    // Given a file with an xit() that a closed dialog left pending to be included.
+    prepareScenarioWithTestFile("commentedOutTests.js");
+    jasmineFile = new JasmineFile(getProject(), virtualFile);
+    jasmineFile.buildTreeNodeSync();
+    TestFindResult excluded = null;
+    for (TestFindResult test : jasmineFile.getAllTests()) {
+      if (test.getTestState() == TestState.Excluded) {
+        excluded = test;
+      }
+    }
+    assertNotNull(excluded);
+    excluded.setPendingChangeState(TestState.Included);
+
+    // When you clean the file.
+    jasmineFile.cleanFile();
+
+    // Then ensure the xit() is rolled back to it().
+    String text = document.getText();
+    assertTrue(text.contains("    it('it3 /* not a comment */'"));
+    assertFalse(text.contains("xit("));
+    assertFalse(text.contains("fit('it3"));
+  }
+
   public void testShouldCountTests() {
     shouldCountTests("jasmine1/jasmineTestBefore.js");
     shouldCountTests("jasmine2/jasmineTestBefore.js");
@@ -196,4 +295,184 @@ public class JasmineFileTest extends BaseTestCase {
     assertEquals(2, testCounts.getExcludedCount());
     assertEquals(6, testCounts.getTestCount());
   }
+
+  public void testIncrementalUpdatesMatchFullParse() {
+    // Given a jasmine file that is updated incrementally.
+    buildRootNodeFromFile("testWihManyLevels.js");
+    jasmineFile.enableIncrementalUpdates(getTestRootDisposable());
+
+    String[] snippets = {
+        "it('new test', function () {});\n",
+        "  describe('new suite', function () {\n",
+        "    xit('excluded', function () {\n",
+        "});\n",
+        "\n",
+        "  ",
+        "x", "f", "d", "i", "(", "'", "it", "describe",
+        "/*", "*/", "`", "\\",
+    };
+    Random random = new Random(42);
+
+    for (int i = 0; i < 300; i++) {
+      // When you make a random edit.
+      final int length = document.getTextLength();
+      final int offset = random.nextInt(length + 1);
+      final int removeLength = random.nextBoolean() ? 0 : Math.min(random.nextInt(6), length - offset);
+      final String insert = random.nextInt(4) == 0 ? "" : snippets[random.nextInt(snippets.length)];
+
+      WriteCommandAction.runWriteCommandAction(getProject(), new Runnable() {
+        @Override
+        public void run() {
+          document.replaceString(offset, offset + removeLength, insert);
+        }
+      });
+
+      // Then ensure the incremental result is the same as parsing the whole file.
+      JasmineFile fullParse = new JasmineFile(getProject(), virtualFile);
+      TreeNode expectedRoot = fullParse.buildTreeNodeSync();
+      assertSameTests(fullParse.getAllTests(), jasmineFile.getAllTests());
+      assertEquals(treeToString(expectedRoot), treeToString(jasmineFile.getTreeNode()));
+      assertSameCounts(fullParse.getTestCounts(), jasmineFile.getTestCounts());
+      assertEquals(fullParse.hasTestsMarkedToRun(), jasmineFile.hasTestsMarkedToRun());
+    }
+  }
+
+  public void testBulkUpdatesMatchFullParse() {
+    // Given a jasmine file that is updated incrementally.
+    buildRootNodeFromFile("testWihManyLevels.js");
+    jasmineFile.enableIncrementalUpdates(getTestRootDisposable());
+
+    final String[] snippets = {
+        "it('new test', function () {});\n",
+        "    xit('excluded', function () {\n",
+        "});\n",
+        "\n",
+        "x", "f", "(", "'", "describe",
+    };
+    final Random random = new Random(7);
+
+    for (int i = 0; i < 50; i++) {
+      // When you make several random edits in one bulk update.
+      WriteCommandAction.runWriteCommandAction(getProject(), new Runnable() {
+        @Override
+        public void run() {
+          DocumentUtil.executeInBulk(document, true, new Runnable() {
+            @Override
+            public void run() {
+              for (int edit = 0; edit < 5; edit++) {
+                int length = document.getTextLength();
+                int offset = random.nextInt(length + 1);
+                int removeLength = Math.min(random.nextInt(4), length - offset);
+                String insert = snippets[random.nextInt(snippets.length)];
+                document.replaceString(offset, offset + removeLength, insert);
+              }
+            }
+          });
+        }
+      });
+
+      // Then ensure the result is the same as parsing the whole file.
+      JasmineFile fullParse = new JasmineFile(getProject(), virtualFile);
+      TreeNode expectedRoot = fullParse.buildTreeNodeSync();
+      assertSameTests(fullParse.getAllTests(), jasmineFile.getAllTests());
+      assertEquals(treeToString(expectedRoot), treeToString(jasmineFile.getTreeNode()));
+    }
+  }
+
+  public void testShouldParseAgainWhenACommentIsOpened() {
+    // Given a jasmine file that is updated incrementally.
+    buildRootNodeFromFile("commentedOutTests.js");
+    jasmineFile.enableIncrementalUpdates(getTestRootDisposable());
+    assertEquals(4, jasmineFile.getAllTests().size());
+
+    // When you open a comment before the second test.
+    final int offset = document.getText().indexOf("    it('it2'");
+    WriteCommandAction.runWriteCommandAction(getProject(), new Runnable() {
+      @Override
+      public void run() {
+        document.insertString(offset, "/*\n");
+      }
+    });
+
+    // Then ensure the tests below the comment were removed.
+    assertEquals(2, jasmineFile.getAllTests().size());
+
+    // When you remove the comment.
+    WriteCommandAction.runWriteCommandAction(getProject(), new Runnable() {
+      @Override
+      public void run() {
+        document.deleteString(offset, offset + 3);
+      }
+    });
+
+    // Then ensure the tests are found again.
+    assertEquals(4, jasmineFile.getAllTests().size());
+    assertEquals("it3 /* not a comment */", jasmineFile.getAllTests().get(3).getTestText());
+  }
+
+  public void testShouldOnlyScanAroundAnEditInAComment() {
+    // Given a jasmine file with comments and template literals that span lines.
+    buildRootNodeFromFile("commentedOutTests.js");
+    jasmineFile.enableIncrementalUpdates(getTestRootDisposable());
+    TestFindResult lastTest = jasmineFile.getAllTests().get(3);
+
+    // When you type in the block comment and in the template literal.
+    final int commentOffset = document.getText().indexOf("commented out it");
+    WriteCommandAction.runWriteCommandAction(getProject(), new Runnable() {
+      @Override
+      public void run() {
+        document.insertString(commentOffset, "still ");
+      }
+    });
+    final int templateOffset = document.getText().indexOf("<div>");
+    WriteCommandAction.runWriteCommandAction(getProject(), new Runnable() {
+      @Override
+      public void run() {
+        document.insertString(templateOffset, "\n  it('x', function () {});\n");
+      }
+    });
+
+    // Then ensure the tests below were shifted instead of parsed again.
+    assertEquals(4, jasmineFile.getAllTests().size());
+    assertSame(lastTest, jasmineFile.getAllTests().get(3));
+    assertEquals(document.getText().indexOf("xit('it3"), lastTest.getStartOffset());
+
+    // And ensure the result is the same as parsing the whole file.
+    JasmineFile fullParse = new JasmineFile(getProject(), virtualFile);
+    fullParse.buildTreeNodeSync();
+    assertSameTests(fullParse.getAllTests(), jasmineFile.getAllTests());
+  }
+
+  private void assertSameCounts(TestCounts expected, TestCounts actual) {
+    assertEquals(expected.getTestCount(), actual.getTestCount());
+    assertEquals(expected.getIncludedCount(), actual.getIncludedCount());
+    assertEquals(expected.getExcludedCount(), actual.getExcludedCount());
+  }
+
+  private void assertSameTests(List<TestFindResult> expected, List<TestFindResult> actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      TestFindResult expectedTest = expected.get(i);
+      TestFindResult actualTest = actual.get(i);
+      assertEquals(expectedTest.getStartOffset(), actualTest.getStartOffset());
+      assertEquals(expectedTest.getEndOffset(), actualTest.getEndOffset());
+      assertEquals(expectedTest.getLineNumber(), actualTest.getLineNumber());
+      assertEquals(expectedTest.getIndentation(), actualTest.getIndentation());
+      assertEquals(expectedTest.isDescribe(), actualTest.isDescribe());
+      assertEquals(expectedTest.getTestState(), actualTest.getTestState());
+      assertEquals(expectedTest.getTestText(), actualTest.getTestText());
+    }
+  }
+
+  private String treeToString(TreeNode node) {
+    StringBuilder builder = new StringBuilder(String.valueOf(node.getUserObject()));
+    if (node.getChildCount() > 0) {
+      builder.append('[');
+      for (int i = 0; i < node.getChildCount(); i++) {
+        builder.append(treeToString((TreeNode) node.getChildAt(i))).append(',');
+      }
+      builder.append(']');
+    }
+    return builder.toString();
+  }
 }
@@ -44,6 +44,45 @@ public class JasmineFinderTest extends BaseTestCase {
     assertEquals(11, findResults.size());
   }
 
+  public void testShouldSkipTestsInCommentsAndStrings() {
+    List<FindResult> findResults = whenYouFindTestsForJsFile("commentedOutTests.js");
+
+    // Then ensure only the 4 tests in code were found.
+    assertEquals(4, findResults.size());
+
+    // And ensure the comment, the template literal and the string that span lines are known.
+    assertEquals(6, jasmineFinder.getMultiLineRegions().length);
+  }
+
+  public void testScannerFindsSameResultsAsFindManager() {
+    findsSameResultsAsFindManager("jasmine1/jasmineTestBefore.js");
+    findsSameResultsAsFindManager("jasmine1/jasmineTestCaretTop.js");
+    findsSameResultsAsFindManager("jasmine1/jasmineWithWeirdRegularExpressions.js");
+    findsSameResultsAsFindManager("jasmine2/jasmineTestBefore.js");
+    findsSameResultsAsFindManager("jasmine2/jasmineTestCaretTop.js");
+    findsSameResultsAsFindManager("jasmine2/jasmineWithWeirdRegularExpressions.js");
+    findsSameResultsAsFindManager("testWihManyLevels.js");
+    findsSameResultsAsFindManager("doubleDescribe.js");
+  }
+
+  private void findsSameResultsAsFindManager(String fileName) {
+    // Given the results from the find manager.
+    prepareScenarioWithTestFile(fileName);
+    jasmineFinder.findAllWithFindManager();
+    List<FindResult> expected = jasmineFinder.getFindResults();
+
+    // When you scan the same file.
+    jasmineFinder.findAll();
+    List<FindResult> actual = jasmineFinder.getFindResults();
+
+    // Then ensure both return the same matches.
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i).getStartOffset(), actual.get(i).getStartOffset());
+      assertEquals(expected.get(i).getEndOffset(), actual.get(i).getEndOffset());
+    }
+  }
+
   private List<FindResult> whenYouFindTestsForJsFile(String fileName) {
     prepareScenarioWithTestFile(fileName);
     jasmineFinder.findAll();
@@ -1,11 +1,17 @@
 package com.karateca.ddescriber.model;
 
 import com.intellij.find.FindResult;
+import com.intellij.find.impl.FindResultImpl;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.EditorFactory;
 import com.karateca.ddescriber.BaseTestCase;
+import com.karateca.ddescriber.core.TestState;
 
 import junit.framework.Assert;
 
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * @author Andres Dominguez.
@@ -27,4 +33,91 @@ public class TestFindResultTest extends BaseTestCase {
   public void testToString() throws Exception {
     assertEquals("top describe", testFindResult.toString());
   }
+
+  public void testShouldKeepTheNameAfterTheDocumentChanges() {
+    // Given a test whose name was not read yet.
+    Document lineDocument = EditorFactory.getInstance().createDocument("it('first name', function () {");
+    TestFindResult result = new TestFindResult(lineDocument, new FindResultImpl(0, 3));
+
+    // When the document changes.
+    lineDocument.replaceString(4, 9, "other");
+
+    // Then ensure the name is read from the document as it was parsed.
+    assertEquals("first name", result.getTestText());
+  }
+
+  public void testShouldShareNames() {
+    Document lineDocument = EditorFactory.getInstance().createDocument(
+        "it('same name', function () {\nit('same name', function () {");
+    TestFindResult first = new TestFindResult(lineDocument, new FindResultImpl(0, 3));
+    TestFindResult second = new TestFindResult(lineDocument, new FindResultImpl(30, 33));
+
+    assertSame(first.getTestText(), second.getTestText());
+  }
+
+  public void testShouldMatchRegularExpressionBehavior() {
+    String[] lines = {
+        "    it('simple', function () {",
+        "describe(\"double quotes\", function () {",
+        "  xdescribe  ('the xdescribe', function () {",
+        "    fit('included it( xit( describe( xdescribe(', function () {",
+        "    it('a' + 'b', function () {",
+        "    describe(SomeClass.name, function () {",
+        "  ddescribe('x', function () { it('y', function () {",
+        "\tit('tab', function () {",
+        "    it(",
+    };
+
+    for (String line : lines) {
+      Document lineDocument = EditorFactory.getInstance().createDocument("\n" + line + "\n");
+      int endOffset = 1 + line.indexOf('(') + 1;
+      TestFindResult result = new TestFindResult(lineDocument, new FindResultImpl(1, endOffset));
+
+      assertEquals(line, getTextWithRegularExpressions(line), result.getTestText());
+      assertEquals(line, getIndentationWithRegularExpressions(line), result.getIndentation());
+      assertEquals(line, line.matches("\\s*[xdf]?describe.*"), result.isDescribe());
+      assertEquals(line, getStateWithRegularExpressions(line), result.getTestState());
+    }
+  }
+
+  public void testShouldReadTheNameFromTheStringLiteral() {
+    String[][] linesAndNames = {
+        {"    it('', function () {", ""},
+        {"    it(' leading space', function () {", " leading space"},
+        {"    iit('it(\\'nested\\', x)', function () {", "it('nested', x)"},
+        {"    it(\"say \\\"hi\\\"\", function () {", "say \"hi\""},
+        {"    it(`template`, function () {", "template"},
+        {"    it( 'spaces' , function () {", "spaces"},
+    };
+
+    for (String[] lineAndName : linesAndNames) {
+      String line = lineAndName[0];
+      Document lineDocument = EditorFactory.getInstance().createDocument("\n" + line + "\n");
+      int endOffset = 1 + line.indexOf('(') + 1;
+      TestFindResult result = new TestFindResult(lineDocument, new FindResultImpl(1, endOffset));
+
+      // Ensure the name is the value of the string, without the quotes and escapes.
+      assertEquals(line, lineAndName[1], result.getTestText());
+    }
+  }
+
+  private String getTextWithRegularExpressions(String line) {
+    String text = line.replaceAll("(\\S+)([\"\'])(\\s*[,+]\\s*.*$)", "$1");
+    return text.replaceAll("\\s*([xfd]?describe\\s*\\(|[xfi]?it\\s*\\()[\"\'](\\S+)", "$2");
+  }
+
+  private int getIndentationWithRegularExpressions(String line) {
+    Matcher matcher = Pattern.compile("xit|fit|iit|it|xdescribe|fdescribe|ddescribe|describe").matcher(line);
+    return matcher.find() ? matcher.start() : 0;
+  }
+
+  private TestState getStateWithRegularExpressions(String line) {
+    if (line.matches("\\s*([fd]describe|[fi]it).*")) {
+      return TestState.Included;
+    }
+    if (line.matches("\\s*(xdescribe|xit).*")) {
+      return TestState.Excluded;
+    }
+    return TestState.NotModified;
+  }
 }
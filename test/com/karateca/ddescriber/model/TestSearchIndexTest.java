@@ -0,0 +1,48 @@
+package com.karateca.ddescriber.model;
+
+import com.karateca.ddescriber.BaseTestCase;
+
+import java.util.List;
+
+public class TestSearchIndexTest extends BaseTestCase {
+
+  private JasmineFile jasmineFile;
+
+  private TestSearchIndex createIndexForFile(String fileName) {
+    prepareScenarioWithTestFile(fileName);
+    jasmineFile = new JasmineFile(getProject(), virtualFile);
+    jasmineFile.buildHierarchySync();
+    return jasmineFile.getSearchIndex();
+  }
+
+  public void testShouldKeepTheNamesInLowerCase() {
+    // Given an index for a file with tricky names.
+    TestSearchIndex searchIndex = createIndexForFile("jasmine2/jasmineWithWeirdRegularExpressions.js");
+
+    // Then ensure every name is the displayed name in lower case.
+    List<TestFindResult> tests = jasmineFile.getAllTests();
+    for (int i = 0; i < tests.size(); i++) {
+      assertEquals(tests.get(i).toString().toLowerCase(), searchIndex.getLowerCaseName(i));
+    }
+  }
+
+  public void testShouldFindTheSameTestsAsAScan() {
+    // Given an index for a file with many tests.
+    TestSearchIndex searchIndex = createIndexForFile("testWihManyLevels.js");
+    List<TestFindResult> tests = jasmineFile.getAllTests();
+
+    for (String pattern : new String[]{"", "s", "te", "suite", "test1", "uite", "excluded", "zzz"}) {
+      // When you search for a pattern.
+      int[] rows = searchIndex.search(pattern);
+
+      // Then ensure it finds the tests that contain it, in document order.
+      int found = 0;
+      for (int i = 0; i < tests.size(); i++) {
+        if (tests.get(i).toString().toLowerCase().contains(pattern)) {
+          assertEquals(i, rows[found++]);
+        }
+      }
+      assertEquals(found, rows.length);
+    }
+  }
+}
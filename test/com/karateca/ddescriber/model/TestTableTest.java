@@ -0,0 +1,125 @@
+package com.karateca.ddescriber.model;
+
+import com.intellij.find.FindResult;
+import com.karateca.ddescriber.BaseTestCase;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+public class TestTableTest extends BaseTestCase {
+
+  private TestTable getTableForTestFile(String testFile) {
+    prepareScenarioWithTestFile(testFile);
+    jasmineFinder.findAll();
+
+    TestTable table = new TestTable(document.getImmutableCharSequence(), 1);
+    for (FindResult findResult : jasmineFinder.findResults) {
+      table.add(document, findResult.getEndOffset());
+    }
+    table.computeParents();
+    return table;
+  }
+
+  public void testShouldFindTheParents() {
+    // Given a file with nested suites.
+    TestTable table = getTableForTestFile("testWihManyLevels.js");
+
+    // Then ensure every test is indented deeper than its parent.
+    assertEquals(TestTable.NO_PARENT, table.getParent(0));
+    for (int i = 1; i < table.size(); i++) {
+      int parent = table.getParent(i);
+      assertTrue(parent < i);
+      if (parent != TestTable.NO_PARENT) {
+        assertTrue(table.isDescribe(parent));
+        assertTrue(table.getIndentation(parent) < table.getIndentation(i));
+      }
+    }
+  }
+
+  public void testShouldReuseTheViews() {
+    // Given the tests in a file.
+    TestTable table = getTableForTestFile("testWihManyLevels.js");
+
+    // When you get the same test twice.
+    List<TestFindResult> tests = table.asList();
+
+    // Then ensure the view is the same.
+    assertSame(tests.get(3), table.get(3));
+    assertEquals(table.size(), tests.size());
+  }
+
+  public void testShouldCreateOneViewForConcurrentReaders() throws Exception {
+    // Given the tests in a file, without views.
+    final TestTable table = getTableForTestFile("testWihManyLevels.js");
+    final TestFindResult[][] views = new TestFindResult[4][table.size()];
+    final CountDownLatch start = new CountDownLatch(1);
+
+    // When many threads get the views at the same time.
+    Thread[] threads = new Thread[views.length];
+    for (int t = 0; t < threads.length; t++) {
+      final TestFindResult[] threadViews = views[t];
+      threads[t] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            return;
+          }
+          for (int i = 0; i < threadViews.length; i++) {
+            threadViews[i] = table.get(i);
+          }
+        }
+      });
+      threads[t].start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    // Then ensure they all got the same view of every test.
+    for (int i = 0; i < table.size(); i++) {
+      for (TestFindResult[] threadViews : views) {
+        assertSame(table.get(i), threadViews[i]);
+      }
+    }
+  }
+
+  public void testShouldKeepTheRemovedTests() {
+    // Given the tests in a file.
+    TestTable table = getTableForTestFile("testWihManyLevels.js");
+    TestFindResult removed = table.get(1);
+    TestFindResult moved = table.get(2);
+    String removedName = removed.getTestText();
+    int removedLine = removed.getLineNumber();
+    String movedName = moved.getTestText();
+    int size = table.size();
+
+    // When you remove the second test.
+    table.replace(1, 2, new TestTable(document.getImmutableCharSequence(), 1), 0, 0);
+
+    // Then ensure the removed view keeps its values.
+    assertEquals(removedName, removed.getTestText());
+    assertEquals(removedLine, removed.getLineNumber());
+
+    // And ensure the view below it follows its row.
+    assertSame(moved, table.get(1));
+    assertEquals(movedName, moved.getTestText());
+    assertEquals(size - 1, table.size());
+  }
+
+  public void testShouldReplaceRowsAddedPastTheInitialCapacity() {
+    // Given a table that grew past its initial capacity of one row.
+    TestTable table = getTableForTestFile("testWihManyLevels.js");
+    int size = table.size();
+    String lastName = table.getTestText(size - 1);
+
+    // When you remove the row before the last one.
+    table.replace(size - 2, size - 1, new TestTable(document.getImmutableCharSequence(), 1), 0, 0);
+
+    // Then ensure the last row moved up and has a view.
+    assertEquals(size - 1, table.size());
+    assertEquals(lastName, table.get(size - 2).getTestText());
+  }
+}
@@ -0,0 +1,138 @@
+package com.karateca.ddescriber.model;
+
+import com.karateca.ddescriber.BaseTestCase;
+
+import javax.swing.JTree;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+
+public class TestTreeModelTest extends BaseTestCase {
+
+  private JasmineFile jasmineFile;
+
+  private TestTreeModel createModelForFile(String fileName) {
+    prepareScenarioWithTestFile(fileName);
+    jasmineFile = new JasmineFile(getProject(), virtualFile);
+    jasmineFile.buildHierarchySync();
+    return jasmineFile.createTreeModel();
+  }
+
+  public void testShouldHaveTheSameStructureAsTheTree() {
+    shouldHaveTheSameStructureAsTheTree("testWihManyLevels.js");
+    shouldHaveTheSameStructureAsTheTree("doubleDescribe.js");
+    shouldHaveTheSameStructureAsTheTree("jasmine2/jasmineTestCaretTop.js");
+  }
+
+  private void shouldHaveTheSameStructureAsTheTree(String fileName) {
+    // Given a tree model for a file.
+    TestTreeModel model = createModelForFile(fileName);
+
+    // Then ensure it has the same nodes as the tree.
+    assertEquals(treeToString(jasmineFile.getTreeNode()), modelToString(model, model.getRoot()));
+    assertTrue(model.getRoot().isTopNode());
+  }
+
+  public void testShouldFindThePathToATest() {
+    // Given a tree model for a file with many levels.
+    TestTreeModel model = createModelForFile("testWihManyLevels.js");
+
+    for (TestFindResult test : jasmineFile.getAllTests()) {
+      // When you get the path to a test.
+      TreePath path = model.getPath(test);
+
+      // Then ensure every node in the path is the child of the previous one.
+      assertSame(model.getRoot(), path.getPathComponent(0));
+      assertSame(test, ((TreeNode) path.getLastPathComponent()).getNodeValue());
+      for (int i = 1; i < path.getPathCount(); i++) {
+        Object parent = path.getPathComponent(i - 1);
+        Object child = path.getPathComponent(i);
+        assertSame(child, model.getChild(parent, model.getIndexOfChild(parent, child)));
+      }
+    }
+  }
+
+  public void testShouldCreateTheNodesOnce() {
+    // Given a tree model.
+    TestTreeModel model = createModelForFile("testWihManyLevels.js");
+
+    // Then ensure asking twice for a child returns the same node.
+    assertSame(model.getChild(model.getRoot(), 1), model.getChild(model.getRoot(), 1));
+  }
+
+  public void testShouldFilterTheTree() {
+    // Given a tree showing all the tests of a file.
+    TestTreeModel model = createModelForFile("testWihManyLevels.js");
+    JTree tree = new JTree(model);
+    expandAll(tree);
+
+    // When you filter by a test name.
+    model.setFilter("TEST5");
+
+    // Then ensure only the test and its suites are visible.
+    expandAll(tree);
+    assertEquals(4, model.getVisibleCount());
+    assertEquals("suite1,suite3,suite4,test5,", rowsToString(tree));
+  }
+
+  public void testShouldUpdateTheTreeWhileTyping() {
+    // Given a tree showing all the tests of a file.
+    TestTreeModel model = createModelForFile("testWihManyLevels.js");
+    JTree tree = new JTree(model);
+    expandAll(tree);
+
+    // When you type, delete and change the filter.
+    for (String filter : new String[]{"t", "te", "tes", "test", "test1", "test", "suite", "xcl", "", "6"}) {
+      model.setFilter(filter);
+      expandAll(tree);
+
+      // Then ensure the tree shows the same rows as the model.
+      assertEquals(filter, depthFirstToString(model, model.getRoot()), rowsToString(tree));
+    }
+  }
+
+  private void expandAll(JTree tree) {
+    for (int i = 0; i < tree.getRowCount(); i++) {
+      tree.expandRow(i);
+    }
+  }
+
+  private String rowsToString(JTree tree) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < tree.getRowCount(); i++) {
+      builder.append(tree.getPathForRow(i).getLastPathComponent()).append(',');
+    }
+    return builder.toString();
+  }
+
+  private String depthFirstToString(TreeModel model, Object node) {
+    StringBuilder builder = new StringBuilder(String.valueOf(node)).append(',');
+    for (int i = 0; i < model.getChildCount(node); i++) {
+      builder.append(depthFirstToString(model, model.getChild(node, i)));
+    }
+    return builder.toString();
+  }
+
+  private String modelToString(TreeModel model, Object node) {
+    StringBuilder builder = new StringBuilder(String.valueOf(((TreeNode) node).getUserObject()));
+    if (model.getChildCount(node) > 0) {
+      builder.append('[');
+      for (int i = 0; i < model.getChildCount(node); i++) {
+        builder.append(modelToString(model, model.getChild(node, i))).append(',');
+      }
+      builder.append(']');
+    }
+    return builder.toString();
+  }
+
+  private String treeToString(TreeNode node) {
+    StringBuilder builder = new StringBuilder(String.valueOf(node.getUserObject()));
+    if (node.getChildCount() > 0) {
+      builder.append('[');
+      for (int i = 0; i < node.getChildCount(); i++) {
+        builder.append(treeToString((TreeNode) node.getChildAt(i))).append(',');
+      }
+      builder.append(']');
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,89 @@
+package com.karateca.ddescriber.model;
+
+import com.karateca.ddescriber.BaseTestCase;
+import com.karateca.ddescriber.core.JasmineScanner;
+
+public class TestTreeSnapshotTest extends BaseTestCase {
+
+  private static final int TEST_COUNT = 10000;
+
+  public void testShouldUpdateFasterThanCreate() {
+    // Given a suite with many tests.
+    StringBuilder builder = new StringBuilder("describe('suite', function () {\n");
+    for (int i = 0; i < TEST_COUNT; i++) {
+      builder.append("  it('test ").append(i).append("', function () {});\n");
+    }
+    String text = builder.append("});\n").toString();
+
+    // And given the text after a one character edit in the middle of the suite.
+    int row = TEST_COUNT / 2 + 1;
+    int editOffset = text.indexOf("  it('test " + (TEST_COUNT / 2) + "'") + "  it('".length();
+    String newText = text.substring(0, editOffset) + "x" + text.substring(editOffset);
+
+    long updateTime = Long.MAX_VALUE;
+    long createTime = Long.MAX_VALUE;
+    for (int i = 0; i < 50; i++) {
+      TestTable table = createTable(text);
+      TestTreeSnapshot before = TestTreeSnapshot.create(table, 0);
+      TestTable newRows = new TestTable(newText, 1);
+      newRows.add(editOffset - 1, row);
+      table.replace(row, row + 1, newRows, 1, 0);
+
+      // When you update the snapshot after the edit, and create it again.
+      long start = System.nanoTime();
+      TestTreeSnapshot updated = before.update(table, row, row + 1, row + 1, 1);
+      long middle = System.nanoTime();
+      TestTreeSnapshot created = TestTreeSnapshot.create(table, 1);
+      long end = System.nanoTime();
+      updateTime = Math.min(updateTime, middle - start);
+      createTime = Math.min(createTime, end - middle);
+
+      // Then ensure both have the edit and the tests above it are shared.
+      TestTreeSnapshot.Node suite = updated.getRoot().getChildren().get(0);
+      assertEquals("xtest " + TEST_COUNT / 2, suite.getChildren().get(row - 1).getName());
+      assertEquals(created.size(), updated.size());
+      assertSame(before.getRoot().getChildren().get(0).getChildren().get(0),
+          suite.getChildren().get(0));
+    }
+
+    // And ensure the update is not slower than creating the snapshot.
+    assertTrue("update " + updateTime + "ns, create " + createTime + "ns",
+        updateTime <= createTime);
+  }
+
+  public void testShouldFindTheIndexOfAChild() {
+    // Given a suite with tests and a nested suite.
+    String text = "describe('a', function () {\n" +
+        "  it('b', function () {});\n" +
+        "  describe('c', function () {\n" +
+        "    it('d', function () {});\n" +
+        "  });\n" +
+        "  it('e', function () {});\n" +
+        "});\n";
+    TestTreeSnapshot snapshot = TestTreeSnapshot.create(createTable(text), 0);
+    TestTreeSnapshot.Node suite = snapshot.getRoot().getChildren().get(0);
+    TestTreeSnapshot.Node nested = suite.getChildren().get(1);
+
+    // Then ensure every child is found at its index.
+    for (int i = 0; i < suite.getChildren().size(); i++) {
+      assertEquals(i, suite.indexOfChild(suite.getChildren().get(i)));
+    }
+    assertEquals(0, snapshot.getRoot().indexOfChild(suite));
+
+    // And ensure the nodes of other parents are not found.
+    assertEquals(-1, suite.indexOfChild(nested.getChildren().get(0)));
+    assertEquals(-1, snapshot.getRoot().indexOfChild(nested));
+  }
+
+  private static TestTable createTable(String text) {
+    final TestTable table = new TestTable(text, 16);
+    new JasmineScanner(text).scan(new JasmineScanner.MatchListener() {
+      @Override
+      public void matchFound(JasmineScanner.Match match) {
+        table.add(match.getEndOffset(), match.getLineNumber());
+      }
+    });
+    table.computeParents();
+    return table;
+  }
+}
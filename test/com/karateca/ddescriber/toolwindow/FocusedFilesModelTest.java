@@ -0,0 +1,191 @@
+package com.karateca.ddescriber.toolwindow;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.ui.UIUtil;
+import com.karateca.ddescriber.ActionUtil;
+import com.karateca.ddescriber.BaseTestCase;
+import com.karateca.ddescriber.model.TestTreeSnapshot;
+
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreePath;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+public class FocusedFilesModelTest extends BaseTestCase {
+
+  private VirtualFile focusedFile;
+  private VirtualFile excludedFile;
+  private VirtualFile cleanFile;
+  private FocusedFilesModel model;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    focusedFile = myFixture.addFileToProject("b/focused.js",
+        "describe('a', function () {\n  fit('b', function () {});\n});").getVirtualFile();
+    excludedFile = myFixture.addFileToProject("a/excluded.js",
+        "xdescribe('c', function () {\n  it('d', function () {});\n});").getVirtualFile();
+    cleanFile = myFixture.addFileToProject("c/clean.js",
+        "describe('e', function () {\n  it('f', function () {});\n});").getVirtualFile();
+
+    model = new FocusedFilesModel(getProject());
+    model.reload(FocusedFilesModel.readAllCounts(getProject()));
+  }
+
+  public void testShouldListTheFilesWithMarkedTests() {
+    // Then ensure the files with marked tests are sorted by path.
+    Object root = model.getRoot();
+    assertEquals(2, model.getChildCount(root));
+    assertEquals(excludedFile, getFile(0));
+    assertEquals(focusedFile, getFile(1));
+    assertEquals(1, model.getEntry(focusedFile).getIncludedCount());
+    assertEquals(1, model.getEntry(excludedFile).getExcludedCount());
+  }
+
+  public void testShouldReadTheTestsWhenTheFileIsExpanded() {
+    // Given a file that was not expanded.
+    FocusedFilesModel.FileEntry entry = model.getEntry(focusedFile);
+    assertFalse(entry.isLoaded());
+    assertFalse(model.isLeaf(entry));
+
+    // When you ask for its children.
+    final boolean[] structureChanged = new boolean[1];
+    model.addTreeModelListener(new TreeModelListener() {
+      @Override
+      public void treeNodesChanged(TreeModelEvent e) {
+      }
+
+      @Override
+      public void treeNodesInserted(TreeModelEvent e) {
+      }
+
+      @Override
+      public void treeNodesRemoved(TreeModelEvent e) {
+      }
+
+      @Override
+      public void treeStructureChanged(TreeModelEvent e) {
+        structureChanged[0] = true;
+      }
+    });
+    assertEquals(0, model.getChildCount(entry));
+    waitForTests(entry);
+
+    // Then ensure the tests are read in the background, and the listeners are told.
+    assertTrue(entry.isLoaded());
+    assertTrue(structureChanged[0]);
+    TestTreeSnapshot.Node suite = (TestTreeSnapshot.Node) model.getChild(entry, 0);
+    TestTreeSnapshot.Node test = (TestTreeSnapshot.Node) model.getChild(suite, 0);
+    assertEquals("a", suite.getName());
+    assertEquals("b", test.getName());
+    assertTrue(model.isLeaf(test));
+    assertEquals(0, model.getIndexOfChild(entry, suite));
+    assertEquals(0, model.getIndexOfChild(suite, test));
+    assertEquals(-1, model.getIndexOfChild(entry, test));
+
+    // And the offset of the test is found from the path.
+    int offset = FocusedFilesModel.getStartOffset(
+        new TreePath(new Object[]{model.getRoot(), entry, suite, test}));
+    assertEquals("describe('a', function () {\n  ".length(), offset);
+  }
+
+  public void testShouldAddAFileThatWasFocused() {
+    // When you focus a test of a clean file.
+    replaceText(cleanFile, "it('f'", "fit('f'");
+    filesChanged(Collections.singletonList(cleanFile));
+
+    // Then ensure the file is added at the end.
+    assertEquals(3, model.getChildCount(model.getRoot()));
+    assertEquals(cleanFile, getFile(2));
+  }
+
+  public void testShouldRemoveAFileThatWasCleaned() {
+    // When you clean the excluded file.
+    replaceText(excludedFile, "xdescribe", "describe");
+    filesChanged(Arrays.asList(excludedFile, cleanFile));
+
+    // Then ensure it is not listed.
+    assertEquals(1, model.getChildCount(model.getRoot()));
+    assertEquals(focusedFile, getFile(0));
+    assertNull(model.getEntry(excludedFile));
+  }
+
+  public void testShouldReadTheTestsAgainWhenTheFileChanges() {
+    // Given a file that was expanded.
+    FocusedFilesModel.FileEntry entry = model.getEntry(focusedFile);
+    Object[] keys = getKeys(entry, 0);
+
+    // When you rename its test.
+    replaceText(focusedFile, "fit('b'", "fit('renamed'");
+    filesChanged(Collections.singletonList(focusedFile));
+
+    // Then ensure the new tests are shown under the same suite once they are read.
+    assertNull(model.findPath(keys));
+    assertTrue(model.isLoading(keys));
+    waitForTests(entry);
+    TreePath newPath = model.findPath(keys);
+    assertNotNull(newPath);
+    TestTreeSnapshot.Node test =
+        (TestTreeSnapshot.Node) model.getChild(newPath.getLastPathComponent(), 0);
+    assertEquals("renamed", test.getName());
+  }
+
+  public void testShouldTellTestsWithTheSameNameApart() {
+    // Given a file with two suites with the same name, and the second one was expanded.
+    replaceText(focusedFile, "describe('a', function () {\n  fit('b', function () {});\n});",
+        "describe('a', function () {\n  fit('b', function () {});\n});\n" +
+            "describe('a', function () {\n  fit('second', function () {});\n});");
+    filesChanged(Collections.singletonList(focusedFile));
+    FocusedFilesModel.FileEntry entry = model.getEntry(focusedFile);
+    Object[] keys = getKeys(entry, 1);
+
+    // When the file changes.
+    replaceText(focusedFile, "fit('b'", "fit('c'");
+    filesChanged(Collections.singletonList(focusedFile));
+    waitForTests(model.getEntry(focusedFile));
+
+    // Then ensure the second suite is found again.
+    TreePath path = model.findPath(keys);
+    TestTreeSnapshot.Node test =
+        (TestTreeSnapshot.Node) model.getChild(path.getLastPathComponent(), 0);
+    assertEquals("second", test.getName());
+  }
+
+  private Object[] getKeys(FocusedFilesModel.FileEntry entry, int suiteIndex) {
+    waitForTests(entry);
+    Object suite = model.getChild(entry, suiteIndex);
+    return model.getKeys(new TreePath(new Object[]{model.getRoot(), entry, suite}));
+  }
+
+  private void filesChanged(Collection<VirtualFile> changedFiles) {
+    model.update(FocusedFilesModel.readCounts(getProject(), changedFiles, model.getFiles()));
+  }
+
+  private void waitForTests(FocusedFilesModel.FileEntry entry) {
+    // Start reading the tests, if nothing asked for them yet.
+    model.getChildCount(entry);
+    long timeout = System.currentTimeMillis() + 10000;
+    while (!entry.isLoaded() && System.currentTimeMillis() < timeout) {
+      UIUtil.dispatchAllInvocationEvents();
+    }
+  }
+
+  private VirtualFile getFile(int index) {
+    return ((FocusedFilesModel.FileEntry) model.getChild(model.getRoot(), index)).getFile();
+  }
+
+  private void replaceText(VirtualFile file, final String text, final String replacement) {
+    final Document document = ActionUtil.getDocument(file);
+    WriteCommandAction.runWriteCommandAction(getProject(), new Runnable() {
+      @Override
+      public void run() {
+        int offset = document.getText().indexOf(text);
+        document.replaceString(offset, offset + text.length(), replacement);
+      }
+    });
+  }
+}
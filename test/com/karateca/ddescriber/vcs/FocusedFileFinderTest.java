@@ -0,0 +1,77 @@
+package com.karateca.ddescriber.vcs;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.karateca.ddescriber.BaseTestCase;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+public class FocusedFileFinderTest extends BaseTestCase {
+
+  private VirtualFile focusedFile;
+  private VirtualFile cleanFile;
+  private VirtualFile textFile;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    focusedFile = myFixture.addFileToProject("focused.js",
+        "describe('a', function () {\n  fit('b', function () {});\n});").getVirtualFile();
+    cleanFile = myFixture.addFileToProject("clean.js",
+        "describe('a', function () {\n  xit('b', function () {});\n});").getVirtualFile();
+    textFile = myFixture.addFileToProject("notes.txt", "fit('b', function () {});")
+        .getVirtualFile();
+  }
+
+  public void testShouldFindTheFocusedFilesInTheIndex() {
+    // When you check the files of a change list.
+    FocusedFileFinder finder = new FocusedFileFinder(getProject());
+    List<VirtualFile> files = finder.find(Arrays.asList(cleanFile, textFile, focusedFile), 1000);
+
+    // Then ensure only the JavaScript file with a focused test is found.
+    assertEquals(Arrays.asList(focusedFile), files);
+    assertTrue(finder.isComplete());
+  }
+
+  public void testShouldFindTheFocusedFilesByScanning() {
+    // When the files are scanned because there is no index.
+    FocusedFileFinder finder = new FocusedFileFinder(getProject());
+    List<VirtualFile> files = finder.findByScanning(Arrays.asList(cleanFile, focusedFile), 1000);
+
+    // Then ensure the same file is found.
+    assertEquals(Arrays.asList(focusedFile), files);
+    assertTrue(finder.isComplete());
+  }
+
+  public void testShouldLeaveOutTheFilesNotScannedInTime() {
+    // When the time budget ran out before the files are scanned.
+    FocusedFileFinder finder = new FocusedFileFinder(getProject());
+    List<VirtualFile> files = finder.findByScanning(Arrays.asList(cleanFile, focusedFile), -1);
+
+    // Then ensure the files are left out, and the result is marked as partial.
+    assertTrue(files.isEmpty());
+    assertFalse(finder.isComplete());
+  }
+
+  public void testShouldStopTheScanWhenInterrupted() {
+    // Given a thread that was interrupted.
+    Thread.currentThread().interrupt();
+
+    // When you scan a file.
+    try {
+      FocusedFileFinder.hasFocusedTests("describe('a', function () {});", Long.MAX_VALUE);
+      fail("The scan should stop");
+    } catch (CancellationException e) {
+      // Then ensure the scan stops.
+    } finally {
+      Thread.interrupted();
+    }
+  }
+
+  public void testShouldOnlyReportIncludedTests() {
+    assertTrue(FocusedFileFinder.hasFocusedTests("ddescribe('a', function () {});"));
+    assertTrue(FocusedFileFinder.hasFocusedTests("  iit('a', function () {});"));
+    assertFalse(FocusedFileFinder.hasFocusedTests("xdescribe('a', function () {});"));
+  }
+}
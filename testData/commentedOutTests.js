@@ -0,0 +1,29 @@
+describe('desc1', function () {
+    it('it1', function () {
+        var pattern = /it\('/;
+        var ratio = total / 2 / count;
+    });
+
+    /*
+    describe('commented out', function () {
+        fit('commented out it', function () {
+        });
+    });
+    */
+
+    // it('line comment', function () {
+    // });
+
+    it('it2', function () {
+        var html = `
+            <div>
+            it('template', function () {
+            ${items.map(function (item) { return `<span>${item}</span>`; })}
+            </div>`;
+        var text = 'single \
+    describe("continued string", function () {';
+    });
+
+    xit('it3 /* not a comment */', function () {
+    });
+});